@@ -1,34 +1,46 @@
 package controllers;
 
-import javafx.scene.media.Media;
+import javafx.scene.media.AudioClip;
 import javafx.scene.media.MediaException;
-import javafx.scene.media.MediaPlayer;
+import org.jetbrains.annotations.NotNull;
 
-import java.net.URISyntaxException;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.EnumMap;
 
 /**
  * Handles audio related events.
+ *
+ * <p>
+ * Each sound is decoded into memory once as a single {@link AudioClip}, which has a much lower latency than a
+ * {@code MediaPlayer} and can overlap its own playback. Each sound has a fixed number of voices, so the number of
+ * sounds playing at once is bounded no matter how often sounds are played. If all voices of a sound are busy, all of
+ * them are stopped before the sound is played again, since an {@link AudioClip} can only stop all of its instances.
+ * </p>
  */
 public class AudioManager {
 
     private static final AudioManager INSTANCE = new AudioManager();
+
     /**
-     * Set of all currently playing sounds.
-     *
-     * <p>
-     * Use this to keep a reference to the sound until it finishes playing.
-     * </p>
+     * Loaded clip of each sound, or {@code null} if the sounds are not loaded yet. Only accessed from the JavaFX
+     * Application Thread.
      */
-    private final Set<MediaPlayer> soundPool = new HashSet<>();
+    private EnumMap<SoundRes, Voices> soundBank = null;
     private boolean enabled = true;
 
     /**
      * Enumeration of known sound resources.
      */
     public enum SoundRes {
-        WIN, LOSE, MOVE;
+        WIN(1), LOSE(1), MOVE(4);
+
+        /**
+         * Maximum number of instances of the sound which can play at once.
+         */
+        private final int maxVoices;
+
+        SoundRes(int maxVoices) {
+            this.maxVoices = maxVoices;
+        }
 
         @Override
         public String toString() {
@@ -36,6 +48,38 @@ public class AudioManager {
         }
     }
 
+    /**
+     * Clip of one sound, with a bound on the number of its instances which play at once.
+     */
+    private static final class Voices {
+
+        @NotNull
+        private final AudioClip clip;
+        private final int maxVoices;
+        /**
+         * Number of instances started since the clip was last silent. {@link AudioClip} does not report when each
+         * instance ends, so this counts every instance as playing until all of them have ended.
+         */
+        private int playing = 0;
+
+        Voices(@NotNull String url, int maxVoices) {
+            clip = new AudioClip(url);
+            this.maxVoices = maxVoices;
+        }
+
+        void play() {
+            if (!clip.isPlaying()) {
+                playing = 0;
+            } else if (playing >= maxVoices) {
+                clip.stop();
+                playing = 0;
+            }
+
+            clip.play();
+            ++playing;
+        }
+    }
+
     private AudioManager() {
     }
 
@@ -52,48 +96,38 @@ public class AudioManager {
     }
 
     /**
-     * Plays the sound. If disabled, simply return.
+     * Loads all sounds, if they are not loaded yet.
      *
      * <p>
-     * Hint:
-     * <ul>
-     * <li>Use {@link MediaPlayer#play()} and {@link MediaPlayer#dispose()}.</li>
-     * <li>When creating a new MediaPlayer object, add it into {@link AudioManager#soundPool} before playing it.</li>
-     * <li>Set a callback for when the sound has completed playing. This is to remove it from the soundpool, and
-     * dispose the player using a daemon thread.</li>
-     * </ul>
+     * This is called before the first sound is played, but can be called beforehand to avoid a delay when the first
+     * sound is played.
+     * </p>
      *
-     * @param name the name of the sound file to be played, excluding .mp3
+     * @throws MediaException if any of the sounds cannot be loaded.
      */
-    private void playFile(final String name) {
-        // TODO
-
-        if (this.isEnabled()){
-            MediaPlayer media;
-            if (name.equals("move")) {
-                    media = new MediaPlayer(new Media(ResourceLoader.getResource("assets/audio/shoot.wav")));
-            } else {
-
-                media = new MediaPlayer(new Media(ResourceLoader.getResource("assets/audio/" + name + ".mp3")));
-            }
-            soundPool.add(media);
-            media.play();
-
-            MediaPlayer finalMedia = media;
-            media.setOnEndOfMedia(() -> {
-                    soundPool.remove(finalMedia);
-                    finalMedia.dispose();
-            });
+    public void preload() {
+        if (soundBank != null) {
+            return;
+        }
 
+        final var bank = new EnumMap<SoundRes, Voices>(SoundRes.class);
+        for (var res : SoundRes.values()) {
+            bank.put(res, new Voices(ResourceLoader.getResource("assets/audio/" + res + ".mp3"), res.maxVoices));
         }
+        soundBank = bank;
     }
 
     /**
-     * Plays a sound.
+     * Plays a sound. If disabled, simply return.
      *
      * @param name Enumeration of the sound, given by {@link SoundRes}.
      */
     public void playSound(final SoundRes name) {
-        playFile(name.toString());
+        if (!isEnabled()) {
+            return;
+        }
+
+        preload();
+        soundBank.get(name).play();
     }
-}
\ No newline at end of file
+}
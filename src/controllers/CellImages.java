@@ -0,0 +1,152 @@
+package controllers;
+
+import javafx.scene.image.Image;
+import models.map.CellGrid;
+import models.map.cells.Cell;
+import models.map.cells.TerminationCell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+/**
+ * Maps elements of the game to their image representations.
+ *
+ * <p>
+ * The models do not know how they are displayed, so that they can be used without loading JavaFX. Images are only
+ * decoded when the first element is rendered, and each distinct {@link Renderer.CellImage} is created once and shared.
+ * </p>
+ */
+public final class CellImages {
+
+    /**
+     * Holder of all images, so that they are only decoded when first used.
+     */
+    private static final class Images {
+        static final Image WALL = load("assets/images/wall.png");
+        static final Image EMPTY_CELL = load("assets/images/empty-cell.png");
+        static final Image TERMINATION_UNFILLED = load("assets/images/dest-unfilled.png");
+        static final Image TERMINATION_FILLED = load("assets/images/dest-filled.png");
+        static final Image CORNER_UNFILLED = load("assets/images/top-left-unfilled.png");
+        static final Image CORNER_FILLED = load("assets/images/top-left-filled.png");
+        static final Image CROSS_UNFILLED = load("assets/images/cross-unfilled.png");
+        static final Image CROSS_FILLED = load("assets/images/cross-filled.png");
+        static final Image STRAIGHT_UNFILLED = load("assets/images/vert-unfilled.png");
+        static final Image STRAIGHT_FILLED = load("assets/images/vert-filled.png");
+
+        @NotNull
+        private static Image load(@NotNull String path) {
+            return ResourceLoader.getAsset(path, Image.class, Image::new);
+        }
+    }
+
+    /**
+     * Image of every packed tile, indexed by the unsigned value of the tile. Filled in on demand.
+     */
+    private static final Renderer.CellImage[] TILE_IMAGES = new Renderer.CellImage[256];
+
+    private CellImages() {
+    }
+
+    /**
+     * @param tile Packed representation of a tile, as stored in a {@link CellGrid}.
+     * @return Image representation of the tile.
+     */
+    @NotNull
+    public static Renderer.CellImage of(byte tile) {
+        final var index = tile & 0xFF;
+
+        var image = TILE_IMAGES[index];
+        if (image == null) {
+            image = create(tile);
+            TILE_IMAGES[index] = image;
+        }
+        return image;
+    }
+
+    /**
+     * @param cell Cell to display.
+     * @return Image representation of the cell.
+     */
+    @NotNull
+    public static Renderer.CellImage of(@NotNull Cell cell) {
+        return of(CellGrid.pack(cell));
+    }
+
+    /**
+     * @param pipe Pipe to display.
+     * @return Image representation of the pipe. Note that the representation is different for filled and unfilled
+     * pipes.
+     */
+    @NotNull
+    public static Renderer.CellImage of(@NotNull Pipe pipe) {
+        final var tile = CellGrid.fillable(pipe.getShape());
+        return of(pipe.getFilled() ? CellGrid.filled(tile) : tile);
+    }
+
+    @NotNull
+    private static Renderer.CellImage create(byte tile) {
+        final var filled = CellGrid.isFilled(tile);
+
+        switch (CellGrid.kindOf(tile)) {
+            case CellGrid.FILLABLE: {
+                final var shape = CellGrid.shapeOf(tile);
+                return shape != null ? ofShape(shape, filled) : new Renderer.CellImage(Images.EMPTY_CELL, 0);
+            }
+            case CellGrid.SOURCE:
+            case CellGrid.SINK: {
+                final var image = filled ? Images.TERMINATION_FILLED : Images.TERMINATION_UNFILLED;
+                final var type = CellGrid.kindOf(tile) == CellGrid.SOURCE
+                        ? TerminationCell.Type.SOURCE
+                        : TerminationCell.Type.SINK;
+                return new Renderer.CellImage(image, terminationRotation(CellGrid.directionOf(tile), type));
+            }
+            default:
+                return new Renderer.CellImage(Images.WALL, 0);
+        }
+    }
+
+    @NotNull
+    private static Renderer.CellImage ofShape(@NotNull Pipe.Shape shape, boolean filled) {
+        switch (shape) {
+            case HORIZONTAL:
+                return new Renderer.CellImage(filled ? Images.STRAIGHT_FILLED : Images.STRAIGHT_UNFILLED, 90);
+            case VERTICAL:
+                return new Renderer.CellImage(filled ? Images.STRAIGHT_FILLED : Images.STRAIGHT_UNFILLED, 0);
+            case TOP_LEFT:
+                return new Renderer.CellImage(filled ? Images.CORNER_FILLED : Images.CORNER_UNFILLED, 0);
+            case TOP_RIGHT:
+                return new Renderer.CellImage(filled ? Images.CORNER_FILLED : Images.CORNER_UNFILLED, 90);
+            case BOTTOM_RIGHT:
+                return new Renderer.CellImage(filled ? Images.CORNER_FILLED : Images.CORNER_UNFILLED, 180);
+            case BOTTOM_LEFT:
+                return new Renderer.CellImage(filled ? Images.CORNER_FILLED : Images.CORNER_UNFILLED, 270);
+            case CROSS:
+                return new Renderer.CellImage(filled ? Images.CROSS_FILLED : Images.CROSS_UNFILLED, 0);
+            default:
+                throw new IllegalStateException("Unknown pipe shape: " + shape);
+        }
+    }
+
+    /**
+     * @return Rotation of the image of a termination cell. The image points upwards when not rotated, and sinks are
+     * drawn pointing towards the tile they are entered from.
+     */
+    private static float terminationRotation(@NotNull Direction dir, @NotNull TerminationCell.Type type) {
+        int rotation;
+        switch (dir) {
+            case UP:
+                rotation = 0;
+                break;
+            case RIGHT:
+                rotation = 90;
+                break;
+            case DOWN:
+                rotation = 180;
+                break;
+            default:
+                rotation = 270;
+                break;
+        }
+        return type == TerminationCell.Type.SOURCE ? rotation : (rotation + 180) % 360;
+    }
+}
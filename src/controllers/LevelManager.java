@@ -1,14 +1,23 @@
 package controllers;
 
+import io.BinaryMapFormat;
+import io.Deserializer;
+import io.GameProperties;
+import io.LevelPack;
+import io.PackedGameProperties;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.Alert;
+import models.FXGame;
+import models.PipeGenerator;
+import models.exceptions.InvalidMapException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
@@ -21,6 +30,11 @@ import java.util.stream.Stream;
 
 /**
  * Singleton class responsible for loading and managing levels from the filesystem.
+ *
+ * <p>
+ * Levels are either loaded from a directory of map files, or from a {@link LevelPack}. Only the index of a level pack
+ * is read when it is set, and each level is read from the pack when it is loaded.
+ * </p>
  */
 public class LevelManager {
 
@@ -48,6 +62,11 @@ public class LevelManager {
      */
     @NotNull
     private Path mapDirectory = Paths.get("");
+    /**
+     * Level pack to load levels from, or {@code null} if levels are loaded from {@link LevelManager#mapDirectory}.
+     */
+    @Nullable
+    private LevelPack levelPack;
 
     private LevelManager() {
         setMapDirectory(mapDirectory);
@@ -69,9 +88,49 @@ public class LevelManager {
     public void setMapDirectory(@NotNull Path mapDirectory) {
         // TODO
         this.mapDirectory = mapDirectory;
+        closeLevelPack();
         loadLevelNamesFromDisk();
     }
 
+    /**
+     * Sets a level pack as the source of levels, and lists all levels in its index.
+     *
+     * <p>
+     * The current map directory is kept, and is used again when {@link LevelManager#setMapDirectory(Path)} is called.
+     * </p>
+     *
+     * @param packPath Path to the level pack.
+     */
+    public void setLevelPack(@NotNull Path packPath) {
+        final LevelPack pack;
+        try {
+            pack = LevelPack.open(packPath);
+        } catch (IOException | InvalidMapException e) {
+            Alert box = new Alert(Alert.AlertType.WARNING);
+            box.setHeaderText("Cannot open level pack");
+            box.setContentText(String.valueOf(e.getMessage()));
+            Platform.runLater(box::showAndWait);
+            return;
+        }
+
+        closeLevelPack();
+        levelPack = pack;
+        levelNames.setAll(pack.getNames());
+    }
+
+    private void closeLevelPack() {
+        if (levelPack == null) {
+            return;
+        }
+
+        try {
+            levelPack.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        levelPack = null;
+    }
+
     /**
      * Loads all level names from the currently set {@link LevelManager#mapDirectory}.
      *
@@ -93,7 +152,7 @@ public class LevelManager {
                     .filter(f -> f.toFile().isFile())
                     .map(Path::getFileName)
                     .map(Path::toString)
-                    .filter(it -> it.endsWith(".map"))
+                    .filter(it -> it.endsWith(".map") || it.endsWith(BinaryMapFormat.EXTENSION))
                     .sorted(String::compareTo)
                     .collect(Collectors.toList());
                 levelNames.clear();
@@ -115,13 +174,60 @@ public class LevelManager {
     }
 
     /**
-     * @return Full path to the currently selected level.
+     * Loads a level from the current map directory or level pack.
+     *
+     * @param levelName Name of the level.
+     * @return Properties of the level.
+     * @throws FileNotFoundException if the level does not exist.
+     * @throws IOException           if an I/O exception has occurred.
+     * @throws InvalidMapException   if the level is invalid.
      */
     @NotNull
-    public Path getCurrentLevelPath() {
-        // TODO
-        Path path = Paths.get(String.valueOf(mapDirectory), curLevelNameProperty.get());
-        return path;
+    public GameProperties loadLevel(@NotNull String levelName) throws IOException {
+        return loadPackedLevel(levelName).toGameProperties();
+    }
+
+    /**
+     * Loads a level from the current map directory or level pack, without unpacking its cells. This is preferred when
+     * the level is only rendered, e.g. as a preview.
+     *
+     * @param levelName Name of the level.
+     * @return Properties of the level.
+     * @throws FileNotFoundException if the level does not exist.
+     * @throws IOException           if an I/O exception has occurred.
+     * @throws InvalidMapException   if the level is invalid.
+     */
+    @NotNull
+    public PackedGameProperties loadPackedLevel(@NotNull String levelName) throws IOException {
+        if (levelPack != null) {
+            final var index = levelPack.indexOf(levelName);
+            if (index < 0) {
+                throw new FileNotFoundException("Level '" + levelName + "' is not in the level pack");
+            }
+            return levelPack.read(index);
+        }
+        return new Deserializer(mapDirectory.resolve(levelName)).parsePackedGameFile();
+    }
+
+    /**
+     * Loads the currently selected level.
+     *
+     * @return A new game of the currently selected level.
+     * @throws IOException           if an I/O exception has occurred.
+     * @throws InvalidMapException   if the level is invalid.
+     * @throws IllegalStateException if a level is not selected.
+     * @see LevelManager#loadLevel(String)
+     */
+    @NotNull
+    public FXGame loadCurrentGame() throws IOException {
+        final var levelName = curLevelNameProperty.get();
+        if (levelName == null) {
+            throw new IllegalStateException("No level is selected");
+        }
+
+        final var prop = loadLevel(levelName);
+        return new FXGame(prop.rows, prop.cols, prop.delay, prop.cells, prop.pipes,
+                new PipeGenerator(prop.pipeWeights));
     }
 
     /**
@@ -0,0 +1,85 @@
+package controllers;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Coalesces render requests, so that each {@link Canvas} is rendered at most once per JavaFX pulse.
+ *
+ * <p>
+ * A render request only marks its canvas as dirty. The latest request of every dirty canvas is run on the next pulse,
+ * so bursts of input or flow events between two pulses do not queue up redundant renders. The timer only runs while
+ * there are pending requests.
+ * </p>
+ */
+public class RenderScheduler extends AnimationTimer {
+
+    private static final RenderScheduler INSTANCE = new RenderScheduler();
+
+    /**
+     * Latest pending render of every dirty canvas. Only accessed from the JavaFX Application Thread.
+     */
+    private final IdentityHashMap<Canvas, Runnable> pending = new IdentityHashMap<>();
+    /**
+     * Buffer holding the renders run in a pulse, so that renders may request further renders.
+     */
+    private final List<Runnable> rendering = new ArrayList<>();
+    private boolean running = false;
+
+    private RenderScheduler() {
+    }
+
+    public static RenderScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Requests a canvas to be rendered on the next pulse. Replaces any pending render of the same canvas.
+     *
+     * <p>
+     * This method may be called from any thread. The render is always run on the JavaFX Application Thread.
+     * </p>
+     *
+     * @param canvas Canvas to render to.
+     * @param render Action which renders onto {@code canvas}.
+     */
+    public void request(@NotNull Canvas canvas, @NotNull Runnable render) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> request(canvas, render));
+            return;
+        }
+
+        pending.put(canvas, render);
+        if (!running) {
+            running = true;
+            start();
+        }
+    }
+
+    /**
+     * Runs all pending renders.
+     *
+     * @param now Timestamp of the current pulse, in nanoseconds.
+     */
+    @Override
+    public void handle(long now) {
+        if (pending.isEmpty()) {
+            running = false;
+            stop();
+            return;
+        }
+
+        rendering.addAll(pending.values());
+        pending.clear();
+        for (var render : rendering) {
+            render.run();
+        }
+        rendering.clear();
+    }
+}
@@ -3,7 +3,8 @@ package controllers;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
-import javafx.scene.transform.Rotate;
+import models.map.CellGrid;
+import models.map.Map;
 import models.map.cells.Cell;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
@@ -14,6 +15,10 @@ import static models.Config.TILE_SIZE;
 
 /**
  * Helper class for render operations on a {@link Canvas}.
+ *
+ * <p>
+ * Tiles are drawn from the {@link SpriteAtlas}, which already contains every rotated and filled variant of each sprite.
+ * </p>
  */
 public class Renderer {
 
@@ -47,36 +52,6 @@ public class Renderer {
         }
     }
 
-    /**
-     * Sets the current rotation of a {@link GraphicsContext}.
-     *
-     * @param gc     Target Graphics Context.
-     * @param angle  Angle to rotate the context by.
-     * @param pivotX X-coordinate of the pivot point.
-     * @param pivotY Y-coordinate of the pivot point.
-     */
-    private static void rotate(@NotNull GraphicsContext gc, double angle, double pivotX, double pivotY) {
-        final var r = new Rotate(angle, pivotX, pivotY);
-        gc.setTransform(r.getMxx(), r.getMyx(), r.getMxy(), r.getMyy(), r.getTx(), r.getTy());
-    }
-
-    /**
-     * Draws a rotated image onto a {@link GraphicsContext}.
-     *
-     * @param gc    Target Graphics Context.
-     * @param image Image to draw.
-     * @param angle Angle to rotate the image by.
-     * @param x     X-coordinate relative to the graphics context to draw the top-left of the image.
-     * @param y     Y-coordinate relative to the graphics context to draw the top-left of the image.
-     */
-    private static void drawRotatedImage(@NotNull GraphicsContext gc, @NotNull Image image, double angle, double x, double y) {
-        // TODO
-        gc.save();
-        rotate(gc, angle, x + image.getWidth()/2, y + image.getHeight()/2);
-        gc.drawImage(image, x, y);
-        gc.restore();
-    }
-
     /**
      * Renders a map into a {@link Canvas}.
      *
@@ -94,12 +69,53 @@ public class Renderer {
         GraphicsContext gc = canvas.getGraphicsContext2D();
         for(int i = 0; i < row; i++){
             for(int j = 0; j < col; j++){
-                CellImage image = map[i][j].getImageRep();
-                drawRotatedImage(gc, image.image, image.rotation, j*TILE_SIZE, i*TILE_SIZE);
+                SpriteAtlas.drawTile(gc, CellGrid.pack(map[i][j]), j*TILE_SIZE, i*TILE_SIZE);
             }
         }
     }
 
+    /**
+     * Renders a map stored in a {@link CellGrid} into a {@link Canvas}.
+     *
+     * @param canvas Canvas to render to.
+     * @param grid   Grid of the map to render.
+     */
+    public static void renderMap(@NotNull Canvas canvas, @NotNull CellGrid grid) {
+        canvas.setHeight(grid.getRows() * TILE_SIZE);
+        canvas.setWidth(grid.getCols() * TILE_SIZE);
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        for (int i = 0; i < grid.size(); i++) {
+            SpriteAtlas.drawTile(gc, grid.get(i), grid.colOf(i) * TILE_SIZE, grid.rowOf(i) * TILE_SIZE);
+        }
+    }
+
+    /**
+     * Renders the tiles of a map which have changed since it is last rendered into a {@link Canvas}.
+     *
+     * <p>
+     * The whole map is rendered if the canvas has to be resized to fit the map. When rendering a map onto a different
+     * canvas, {@link Map#markAllDirty()} should be called beforehand.
+     * </p>
+     *
+     * @param canvas Canvas to render to.
+     * @param map    Map to render.
+     */
+    public static void renderMapChanges(@NotNull Canvas canvas, @NotNull Map map) {
+        final var grid = map.getGrid();
+        final var height = grid.getRows() * TILE_SIZE;
+        final var width = grid.getCols() * TILE_SIZE;
+        if (canvas.getHeight() != height || canvas.getWidth() != width) {
+            canvas.setHeight(height);
+            canvas.setWidth(width);
+            map.markAllDirty();
+        }
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        map.drainDirtyTiles(i -> SpriteAtlas.drawTile(gc, grid.get(i), grid.colOf(i) * TILE_SIZE,
+                grid.rowOf(i) * TILE_SIZE));
+    }
+
     /**
      * Renders a pipe queue into a {@link Canvas}.
      *
@@ -114,8 +130,10 @@ public class Renderer {
 
         GraphicsContext gc = canvas.getGraphicsContext2D();
         for(int i = 0; i < pipeQueue.size(); i++){
-            CellImage image = pipeQueue.get(i).getImageRep();
-            drawRotatedImage(gc, image.image, image.rotation, i * TILE_SIZE + (i + 3) * QUEUE_TILE_PADDING, 0);
+            final var pipe = pipeQueue.get(i);
+            final var tile = CellGrid.fillable(pipe.getShape());
+            SpriteAtlas.drawTile(gc, pipe.getFilled() ? CellGrid.filled(tile) : tile,
+                    i * TILE_SIZE + (i + 3) * QUEUE_TILE_PADDING, 0);
         }
     }
 }
@@ -2,24 +2,121 @@ package controllers;
 
 import models.exceptions.ResourceNotFoundException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Helper class for loading resources from the filesystem.
+ *
+ * <p>
+ * The resource directory is indexed once when this class is first used, so looking up a resource is a single map
+ * lookup, and missing resources are reported immediately. If the resource directory cannot be listed, resources are
+ * resolved individually on first lookup instead.
+ * </p>
+ * <p>
+ * Decoded assets, such as images, can be shared through {@link ResourceLoader#getAsset(String, Class, Function)},
+ * which keeps the most recently used assets in a bounded cache.
+ * </p>
  */
 public class ResourceLoader {
 
     /**
-     * Path to the resources directory.
+     * Path to the resources directory, relative to the root of the classpath.
      */
     @NotNull
-    private static final Path RES_PATH;
+    private static final String RES_ROOT = "/resources";
 
-    static {
-        // TODO: Initialize RES_PATH
-        RES_PATH = Paths.get("/resources");
+    /**
+     * Maximum number of decoded assets to keep in {@link ResourceLoader#ASSETS}.
+     */
+    private static final int MAX_CACHED_ASSETS = 64;
+
+    /**
+     * Absolute URL of every file in the resource directory, keyed by the path relative to the resource directory, or
+     * {@code null} if the resource directory cannot be indexed.
+     */
+    @Nullable
+    private static final Map<String, String> INDEX = buildIndex();
+
+    /**
+     * URLs resolved on lookup, if {@link ResourceLoader#INDEX} is not available.
+     */
+    @NotNull
+    private static final Map<String, String> RESOLVED = new ConcurrentHashMap<>();
+
+    /**
+     * Most recently used decoded assets, keyed by the path relative to the resource directory.
+     */
+    @NotNull
+    private static final Map<String, Object> ASSETS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > MAX_CACHED_ASSETS;
+        }
+    };
+
+    /**
+     * @return Absolute URL of every file in the resource directory, or {@code null} if the directory cannot be listed.
+     */
+    @Nullable
+    private static Map<String, String> buildIndex() {
+        final var rootUrl = ResourceLoader.class.getResource(RES_ROOT);
+        if (rootUrl == null) {
+            return null;
+        }
+
+        try {
+            final var uri = rootUrl.toURI();
+            if (!uri.getScheme().equals("jar")) {
+                return index(Paths.get(uri));
+            }
+
+            try (var fs = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+                return index(fs.getPath(RES_ROOT));
+            } catch (FileSystemAlreadyExistsException e) {
+                return index(FileSystems.getFileSystem(uri).getPath(RES_ROOT));
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @NotNull
+    private static Map<String, String> index(@NotNull Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return Collections.unmodifiableMap(files
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toMap(
+                            p -> normalize(root.relativize(p).toString()),
+                            p -> p.toUri().toString(),
+                            (a, b) -> a,
+                            HashMap::new)));
+        }
+    }
+
+    /**
+     * @param relativePath Path relative to the resource directory.
+     * @return The path with {@code /} as the separator, and without a leading separator.
+     */
+    @NotNull
+    private static String normalize(@NotNull String relativePath) {
+        final var path = relativePath.replace('\\', '/');
+        return path.startsWith("/") ? path.substring(1) : path;
     }
 
     /**
@@ -31,10 +128,55 @@ public class ResourceLoader {
      */
     @NotNull
     public static String getResource(@NotNull final String relativePath) {
-        // TODO
-        Path path = Paths.get(RES_PATH.resolve(relativePath).toString());
-        if (path.toFile() == null)
-            throw new ResourceNotFoundException("Resource not found");
-        return ResourceLoader.class.getResource(RES_PATH.resolve(relativePath).toString()).toExternalForm();
+        final var key = normalize(relativePath);
+
+        if (INDEX != null) {
+            final var url = INDEX.get(key);
+            if (url == null) {
+                throw new ResourceNotFoundException("Resource not found: " + relativePath);
+            }
+            return url;
+        }
+
+        final var url = RESOLVED.get(key);
+        if (url != null) {
+            return url;
+        }
+
+        final var resource = ResourceLoader.class.getResource(RES_ROOT + "/" + key);
+        if (resource == null) {
+            throw new ResourceNotFoundException("Resource not found: " + relativePath);
+        }
+        RESOLVED.put(key, resource.toExternalForm());
+        return resource.toExternalForm();
+    }
+
+    /**
+     * Retrieves a decoded resource, decoding it if it is not in the cache.
+     *
+     * @param relativePath Path to the resource file, relative to the root of the resource directory.
+     * @param type         Type of the decoded resource.
+     * @param decoder      Function which decodes the resource from its absolute path.
+     * @param <T>          Type of the decoded resource.
+     * @return The decoded resource.
+     * @throws ResourceNotFoundException If the file cannot be found under the resource directory.
+     */
+    @NotNull
+    public static <T> T getAsset(@NotNull final String relativePath, @NotNull Class<T> type,
+                                 @NotNull Function<String, ? extends T> decoder) {
+        final var key = normalize(relativePath);
+
+        synchronized (ASSETS) {
+            final var cached = ASSETS.get(key);
+            if (type.isInstance(cached)) {
+                return type.cast(cached);
+            }
+        }
+
+        final T asset = decoder.apply(getResource(key));
+        synchronized (ASSETS) {
+            ASSETS.put(key, asset);
+        }
+        return asset;
     }
 }
@@ -1,17 +1,41 @@
 package controllers;
 
+import javafx.animation.AnimationTimer;
+import javafx.animation.FadeTransition;
 import javafx.scene.Scene;
-import javafx.scene.layout.Pane;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import models.Config;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import views.panes.*;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Singleton class for managing scenes.
+ *
+ * <p>
+ * All panes are displayed in a single persistent {@link Scene}, and navigating between panes only swaps the displayed
+ * pane, so the window is never hidden and recreated. Each pane is only created when it is first shown or requested,
+ * so that only the main menu has to be built before the first window appears. The remaining panes can be built
+ * afterwards by {@link SceneManager#prewarm()}.
+ * </p>
+ * <p>
+ * If the system property {@code pipes.transitions} is {@code true}, a snapshot of the previous pane fades out on top of
+ * the new pane. The snapshot image of each pane is reused between transitions.
+ * </p>
+ * <p>
+ * If the system property {@code pipes.timings} is {@code true}, the time taken to create each pane, to switch between
+ * panes and until the first frame after switching has been rendered are printed to {@link System#out}.
+ * </p>
  */
 public class SceneManager {
 
@@ -21,86 +45,154 @@ public class SceneManager {
     private static final SceneManager INSTANCE = new SceneManager();
 
     /**
-     * Main menu scene.
+     * Whether to print startup and navigation timings.
      */
-    @NotNull
-    private final Scene mainMenuScene = new Scene(new MainMenuPane(), Config.WIDTH / 2.0, Config.HEIGHT);
-    //Debug
-//    private final Scene settingsScene = new Scene(new MainMenuPane(), Config.WIDTH / 2.0, Config.HEIGHT);
-//    private final Scene levelSelectScene = new Scene(new MainMenuPane(), Config.WIDTH / 2.0, Config.HEIGHT);
-//    private final Scene gameplayScene = new Scene(new MainMenuPane(), Config.WIDTH / 2.0, Config.HEIGHT);
-//    private final Scene levelEditorScene = new Scene(new MainMenuPane(), Config.WIDTH / 2.0, Config.HEIGHT);
-
+    private static final boolean LOG_TIMINGS = Boolean.getBoolean("pipes.timings");
     /**
-     * Settings scene.
+     * Whether switching between panes fades out a snapshot of the previous pane.
      */
-    @NotNull
-    private final Scene settingsScene = new Scene(new SettingsPane(), Config.WIDTH, Config.HEIGHT);
-//    //debug
-//    private final Scene mainMenuScene = new Scene(new SettingsPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene levelSelectScene = new Scene(new SettingsPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene gameplayScene = new Scene(new SettingsPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene levelEditorScene = new Scene(new SettingsPane(), Config.WIDTH, Config.HEIGHT);
+    private static final boolean TRANSITIONS_ENABLED = Boolean.getBoolean("pipes.transitions");
 
     /**
-     * Level select scene.
+     * Duration of the fade between two panes.
      */
-    @NotNull
-    private final Scene levelSelectScene = new Scene(new LevelSelectPane(), Config.WIDTH, Config.HEIGHT);
-    //debug
-//    private final Scene mainMenuScene = new Scene(new LevelSelectPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene levelEditorScene = new Scene(new LevelSelectPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene gameplayScene = new Scene(new LevelSelectPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene settingsScene = new Scene(new LevelSelectPane(), Config.WIDTH, Config.HEIGHT);
+    private static final Duration TRANSITION_DURATION = Duration.millis(150);
 
     /**
-     * Gameplay scene.
+     * Factory of a pane, containing the size to display the pane at.
      */
-    @NotNull
-    private final Scene gameplayScene = new Scene(new GameplayPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene mainMenuScene = new Scene(new GameplayPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene levelSelectScene = new Scene(new GameplayPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene levelEditorScene = new Scene(new GameplayPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene settingsScene = new Scene(new GameplayPane(), Config.WIDTH, Config.HEIGHT);
+    private static final class PaneFactory {
+        @NotNull
+        final Supplier<? extends GamePane> pane;
+        final double width;
+        final double height;
 
+        PaneFactory(@NotNull Supplier<? extends GamePane> pane, double width, double height) {
+            this.pane = pane;
+            this.width = width;
+            this.height = height;
+        }
+    }
 
     /**
-     * Level editor scene.
+     * Factories of all known panes, in the order they are prewarmed.
      */
     @NotNull
-    private final Scene levelEditorScene = new Scene(new LevelEditorPane(), Config.WIDTH, Config.HEIGHT);
-//    //debug
-//    private final Scene mainMenuScene = new Scene(new LevelEditorPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene levelSelectScene = new Scene(new LevelEditorPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene gameplayScene = new Scene(new LevelEditorPane(), Config.WIDTH, Config.HEIGHT);
-//    private final Scene settingsScene = new Scene(new LevelEditorPane(), Config.WIDTH, Config.HEIGHT);
-
+    private final Map<Class<? extends GamePane>, PaneFactory> factories = new LinkedHashMap<>();
+    /**
+     * Panes which have been created. Only accessed from the JavaFX Application Thread.
+     */
+    @NotNull
+    private final Map<Class<? extends GamePane>, GamePane> panes = new HashMap<>();
+    /**
+     * Last snapshot of each pane, reused as the buffer of the next snapshot.
+     */
+    @NotNull
+    private final Map<Class<? extends GamePane>, WritableImage> snapshots = new HashMap<>();
 
     /**
-     * Map for fast lookup of {@link GamePane} to their respective {@link Scene}.
+     * Root of the persistent scene, containing the current pane and the transition overlay.
      */
     @NotNull
-    private final Map<Class<? extends GamePane>, Scene> scenes = Map.ofEntries(
-            Map.entry(MainMenuPane.class, mainMenuScene),
-            Map.entry(SettingsPane.class, settingsScene),
-            Map.entry(LevelSelectPane.class, levelSelectScene),
-            Map.entry(GameplayPane.class, gameplayScene),
-            Map.entry(LevelEditorPane.class, levelEditorScene)
-    );
+    private final StackPane container = new StackPane();
+    @NotNull
+    private final ImageView transitionView = new ImageView();
+    @NotNull
+    private final FadeTransition transition = new FadeTransition(TRANSITION_DURATION, transitionView);
+
     /**
      * Primary stage.
      */
     @Nullable
     private Stage stage;
+    /**
+     * Persistent scene of {@link SceneManager#stage}, created when the first pane is shown.
+     */
+    @Nullable
+    private Scene scene;
+    @Nullable
+    private Class<? extends GamePane> currentPane;
 
     private SceneManager() {
-        // TODO: Add CSS styles to every scene
+        factories.put(MainMenuPane.class, new PaneFactory(MainMenuPane::new, Config.WIDTH / 2.0, Config.HEIGHT));
+        factories.put(LevelSelectPane.class, new PaneFactory(LevelSelectPane::new, Config.WIDTH, Config.HEIGHT));
+        factories.put(GameplayPane.class, new PaneFactory(GameplayPane::new, Config.WIDTH, Config.HEIGHT));
+        factories.put(SettingsPane.class, new PaneFactory(SettingsPane::new, Config.WIDTH, Config.HEIGHT));
+        factories.put(LevelEditorPane.class, new PaneFactory(LevelEditorPane::new, Config.WIDTH, Config.HEIGHT));
+
+        // The overlay must not affect the size of the container, nor intercept any input.
+        transitionView.setManaged(false);
+        transitionView.setMouseTransparent(true);
+        transition.setFromValue(1);
+        transition.setToValue(0);
+        transition.setOnFinished(e -> container.getChildren().remove(transitionView));
+    }
 
-        mainMenuScene.getStylesheets().add(Config.CSS_STYLES_PATH);
-        settingsScene.getStylesheets().add(Config.CSS_STYLES_PATH);
-        levelSelectScene.getStylesheets().add(Config.CSS_STYLES_PATH);
-        levelEditorScene.getStylesheets().add(Config.CSS_STYLES_PATH);
-        gameplayScene.getStylesheets().add(Config.CSS_STYLES_PATH);
+    /**
+     * Prints the time elapsed since {@code startNanos}, if timings are enabled.
+     *
+     * @param event      Description of the timed event.
+     * @param startNanos Start time of the event, as given by {@link System#nanoTime()}.
+     */
+    public static void logTiming(@NotNull String event, long startNanos) {
+        if (LOG_TIMINGS) {
+            final var ms = (System.nanoTime() - startNanos) / 1_000_000.0;
+            System.out.println(String.format("[timing] %s: %.3f ms", event, ms));
+        }
+    }
+
+    /**
+     * Retrieves a pane, creating it if it has not been created yet.
+     *
+     * @param pane {@link Class} type of the pane.
+     * @return The singleton instance of the pane.
+     * @throws IllegalArgumentException If the {@code pane} is not known.
+     */
+    @NotNull
+    private GamePane getOrCreatePane(@NotNull final Class<? extends GamePane> pane) {
+        final var existing = panes.get(pane);
+        if (existing != null) {
+            return existing;
+        }
+
+        final var factory = factories.get(pane);
+        if (factory == null) {
+            throw new IllegalArgumentException("Pane is not known");
+        }
+
+        final var start = System.nanoTime();
+        final var instance = factory.pane.get();
+        instance.setPrefSize(factory.width, factory.height);
+        panes.put(pane, instance);
+        logTiming("Created " + pane.getSimpleName(), start);
+        return instance;
+    }
+
+    /**
+     * Creates all panes which have not been created yet, one pane per JavaFX pulse so that the displayed pane stays
+     * responsive. Must be called from the JavaFX Application Thread.
+     *
+     * <p>
+     * Each pane is created from an {@link AnimationTimer}, which runs once per pulse, so the frame of each pulse is
+     * rendered before the next pane is created.
+     * </p>
+     */
+    public void prewarm() {
+        final var remaining = new ArrayDeque<>(factories.keySet());
+        remaining.removeAll(panes.keySet());
+        if (remaining.isEmpty()) {
+            return;
+        }
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                getOrCreatePane(remaining.poll());
+                if (remaining.isEmpty()) {
+                    stop();
+                }
+            }
+        }.start();
     }
 
     /**
@@ -117,31 +209,82 @@ public class SceneManager {
     }
 
     /**
-     * Replaces the currently active {@link Scene} with another one.
+     * Replaces the current {@link GamePane} with another one.
      *
-     * @param scene New scene to display.
+     * @param pane New pane to display.
+     * @throws IllegalArgumentException If the {@code pane} is not known.
      */
-    private void showScene(@NotNull final Scene scene) {
+    public void showPane(@NotNull final Class<? extends GamePane> pane) {
+        final var start = System.nanoTime();
+        final var next = getOrCreatePane(pane);
         if (stage == null) {
             return;
         }
 
-        stage.hide();
-        stage.setScene(scene);
-        stage.show();
+        if (scene == null) {
+            scene = new Scene(container);
+            scene.getStylesheets().add(Config.CSS_STYLES_PATH);
+            stage.setScene(scene);
+        }
+
+        final var previous = currentPane;
+        if (TRANSITIONS_ENABLED && previous != null && previous != pane) {
+            final var snapshot = panes.get(previous).snapshot(null, snapshots.get(previous));
+            snapshots.put(previous, snapshot);
+            transitionView.setImage(snapshot);
+            transitionView.setOpacity(1);
+            container.getChildren().setAll(next, transitionView);
+            transition.playFromStart();
+        } else {
+            transition.stop();
+            container.getChildren().setAll(next);
+        }
+        currentPane = pane;
+
+        if (previous == null || !isSameSize(factories.get(previous), factories.get(pane))) {
+            stage.sizeToScene();
+        }
+        if (!stage.isShowing()) {
+            stage.show();
+        }
+        next.requestFocus();
+
+        logTiming("Switched to " + pane.getSimpleName(), start);
+        if (LOG_TIMINGS) {
+            logNextPulse("Rendered " + pane.getSimpleName(), start);
+        }
+    }
+
+    private static boolean isSameSize(@NotNull PaneFactory a, @NotNull PaneFactory b) {
+        return a.width == b.width && a.height == b.height;
     }
 
     /**
-     * Replaces the current {@link GamePane} with another one.
+     * Prints the time elapsed since {@code startNanos} once the next frame has been rendered.
      *
-     * @param pane New pane to display.
-     * @throws IllegalArgumentException If the {@code pane} is not known.
+     * <p>
+     * An {@link AnimationTimer} runs at the start of a pulse, before that pulse lays out and renders the scene. The
+     * time is therefore printed at the start of the second pulse, after the first pulse has rendered its frame.
+     * </p>
+     *
+     * @param event      Description of the timed event.
+     * @param startNanos Start time of the event, as given by {@link System#nanoTime()}.
      */
-    public void showPane(@NotNull final Class<? extends GamePane> pane) {
-        // TODO
-        if (scenes.get(pane) == null)
-            throw new IllegalArgumentException("Pane is not known");
-        showScene(scenes.get(pane));
+    private static void logNextPulse(@NotNull String event, long startNanos) {
+        new AnimationTimer() {
+            private boolean rendered = false;
+
+            @Override
+            public void handle(long now) {
+                if (!rendered) {
+                    rendered = true;
+                    return;
+                }
+
+                logTiming(event, startNanos);
+                stop();
+            }
+        }.start();
     }
 
     /**
@@ -153,7 +296,7 @@ public class SceneManager {
      */
     public <T> T getPane(@NotNull final Class<? extends GamePane> pane) {
         //noinspection unchecked
-        return (T) scenes.get(pane).getRoot();
+        return (T) getOrCreatePane(pane);
     }
 
     @NotNull
@@ -0,0 +1,166 @@
+package controllers;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import models.map.CellGrid;
+import models.map.cells.TerminationCell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+import java.util.Arrays;
+
+import static models.Config.TILE_SIZE;
+
+/**
+ * Single texture containing the sprite of every tile, with rotations and fill states already applied.
+ *
+ * <p>
+ * The atlas is built on first use from the images given by {@link CellImages}. Afterwards, drawing a tile is a plain
+ * sub-image copy from the atlas, so no transform has to be applied to the graphics context per tile.
+ * </p>
+ */
+public final class SpriteAtlas {
+
+    /**
+     * Number of sprites in each row of the atlas.
+     */
+    private static final int COLUMNS = 8;
+
+    /**
+     * Holder of the atlas, so that it is only built when first used.
+     */
+    private static final class Holder {
+        static final SpriteAtlas INSTANCE = new SpriteAtlas();
+    }
+
+    /**
+     * Texture containing all sprites.
+     */
+    @NotNull
+    private final WritableImage texture;
+    /**
+     * {@code slots[tile & 0xFF]}: Index of the sprite of the packed tile in the atlas, or {@code -1} if the tile is not
+     * a valid packed tile.
+     */
+    @NotNull
+    private final int[] slots = new int[256];
+
+    private SpriteAtlas() {
+        Arrays.fill(slots, -1);
+
+        final var tiles = allTiles();
+        final var rows = (tiles.length + COLUMNS - 1) / COLUMNS;
+        texture = new WritableImage(COLUMNS * TILE_SIZE, rows * TILE_SIZE);
+
+        final var src = new int[TILE_SIZE * TILE_SIZE];
+        final var dst = new int[TILE_SIZE * TILE_SIZE];
+        for (int i = 0; i < tiles.length; ++i) {
+            final var cellImage = CellImages.of(tiles[i]);
+            bake(cellImage.image, cellImage.rotation, src, dst);
+            texture.getPixelWriter().setPixels((i % COLUMNS) * TILE_SIZE, (i / COLUMNS) * TILE_SIZE,
+                    TILE_SIZE, TILE_SIZE, PixelFormat.getIntArgbInstance(), dst, 0, TILE_SIZE);
+            slots[tiles[i] & 0xFF] = i;
+        }
+    }
+
+    /**
+     * @return Every valid packed tile, i.e. every tile which can be stored in a {@link CellGrid}.
+     */
+    @NotNull
+    private static byte[] allTiles() {
+        final var shapes = Pipe.Shape.values();
+        final var dirs = Direction.values();
+        final var types = TerminationCell.Type.values();
+
+        final var tiles = new byte[4 + shapes.length * 2 + dirs.length * types.length * 2];
+        var n = 0;
+        tiles[n++] = CellGrid.wall();
+        tiles[n++] = CellGrid.filled(CellGrid.wall());
+        tiles[n++] = CellGrid.fillable(null);
+        tiles[n++] = CellGrid.filled(CellGrid.fillable(null));
+        for (var shape : shapes) {
+            tiles[n++] = CellGrid.fillable(shape);
+            tiles[n++] = CellGrid.filled(CellGrid.fillable(shape));
+        }
+        for (var type : types) {
+            for (var dir : dirs) {
+                tiles[n++] = CellGrid.termination(dir, type);
+                tiles[n++] = CellGrid.filled(CellGrid.termination(dir, type));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Rotates a sprite clockwise about its center.
+     *
+     * @param image    Sprite to rotate. Must be {@link models.Config#TILE_SIZE} pixels wide and high.
+     * @param rotation Angle to rotate by, in degrees. Must be a multiple of 90.
+     * @param src      Buffer to read the sprite into.
+     * @param dst      Buffer to write the rotated sprite to.
+     * @throws IllegalArgumentException if the sprite has the wrong size, or the angle is not a multiple of 90.
+     */
+    private static void bake(@NotNull Image image, float rotation, @NotNull int[] src, @NotNull int[] dst) {
+        if ((int) image.getWidth() != TILE_SIZE || (int) image.getHeight() != TILE_SIZE) {
+            throw new IllegalArgumentException("Sprites must be " + TILE_SIZE + "x" + TILE_SIZE + " pixels");
+        }
+        if (rotation % 90 != 0) {
+            throw new IllegalArgumentException("Sprites can only be rotated by multiples of 90 degrees");
+        }
+
+        image.getPixelReader().getPixels(0, 0, TILE_SIZE, TILE_SIZE, PixelFormat.getIntArgbInstance(), src, 0,
+                TILE_SIZE);
+
+        final var last = TILE_SIZE - 1;
+        final var quarterTurns = Math.floorMod((int) rotation / 90, 4);
+        for (int y = 0; y < TILE_SIZE; ++y) {
+            for (int x = 0; x < TILE_SIZE; ++x) {
+                int srcX;
+                int srcY;
+                switch (quarterTurns) {
+                    case 1:
+                        srcX = y;
+                        srcY = last - x;
+                        break;
+                    case 2:
+                        srcX = last - x;
+                        srcY = last - y;
+                        break;
+                    case 3:
+                        srcX = last - y;
+                        srcY = x;
+                        break;
+                    default:
+                        srcX = x;
+                        srcY = y;
+                        break;
+                }
+                dst[y * TILE_SIZE + x] = src[srcY * TILE_SIZE + srcX];
+            }
+        }
+    }
+
+    /**
+     * Draws the sprite of a tile onto a {@link GraphicsContext}. Must be called from the JavaFX Application Thread.
+     *
+     * @param gc   Target Graphics Context.
+     * @param tile Packed representation of the tile, as stored in a {@link CellGrid}.
+     * @param x    X-coordinate relative to the graphics context to draw the top-left of the tile.
+     * @param y    Y-coordinate relative to the graphics context to draw the top-left of the tile.
+     * @throws IllegalArgumentException if {@code tile} is not a valid packed tile.
+     */
+    public static void drawTile(@NotNull GraphicsContext gc, byte tile, double x, double y) {
+        final var atlas = Holder.INSTANCE;
+
+        final var slot = atlas.slots[tile & 0xFF];
+        if (slot == -1) {
+            throw new IllegalArgumentException("Invalid packed tile: " + tile);
+        }
+
+        gc.drawImage(atlas.texture, (slot % COLUMNS) * TILE_SIZE, (slot / COLUMNS) * TILE_SIZE, TILE_SIZE, TILE_SIZE,
+                x, y, TILE_SIZE, TILE_SIZE);
+    }
+}
@@ -0,0 +1,295 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.solver.Solution;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless validator for all maps in a directory.
+ *
+ * <p>
+ * Every map is deserialized and checked independently on a {@link ForkJoinPool}, and the results are written as a
+ * tab-separated report with the columns {@code file}, {@code status}, {@code moves}, {@code slack} and
+ * {@code message}. The status of each map is one of {@link Status}. For solvable maps, {@code moves} and {@code slack}
+ * are taken from the solution found by {@link LevelValidator#createSolver(GameProperties)}, and can be used to score
+ * the difficulty of the map; They are {@code -1} if no solution is found.
+ * </p>
+ * <p>
+ * The solver assumes that whichever shape it needs arrives next once the initial pipes are used up, so both the status
+ * and the score are optimistic: A map reported as {@link Status#OK} may still be lost with an unlucky pipe queue, and
+ * {@code moves} is a lower bound on the moves needed in an actual game rather than an exact difficulty.
+ * </p>
+ */
+public class BatchValidator {
+
+    /**
+     * Outcome of validating a single map.
+     */
+    public enum Status {
+        /**
+         * The map passes all checks.
+         */
+        OK,
+        /**
+         * The map can be parsed, but fails one of the checks in {@link LevelValidator}.
+         */
+        INVALID,
+        /**
+         * The map cannot be parsed.
+         */
+        ERROR
+    }
+
+    /**
+     * Result of validating a single map.
+     */
+    public static class Result {
+        @NotNull
+        public final String fileName;
+        @NotNull
+        public final Status status;
+        @NotNull
+        public final String message;
+        /**
+         * Number of moves of the best solution, or {@code -1} if no solution is found. This assumes that any shape is
+         * available once the initial pipes are used up, so it is a lower bound for an actual game.
+         */
+        public final int moves;
+        /**
+         * Slack of the best solution, or {@code -1} if no solution is found.
+         *
+         * @see Solution#getSlack()
+         */
+        public final int slack;
+        /**
+         * Parsed map, if the map passes all checks and the parsed maps are kept by the validation.
+         */
+        @Nullable
+        public final PackedGameProperties properties;
+
+        Result(@NotNull String fileName, @NotNull Status status, @NotNull String message) {
+            this(fileName, status, message, null, null);
+        }
+
+        Result(@NotNull String fileName, @NotNull Status status, @NotNull String message, @Nullable Solution solution,
+               @Nullable PackedGameProperties properties) {
+            this.fileName = fileName;
+            this.status = status;
+            this.message = message;
+            this.moves = solution != null ? solution.getMoves() : -1;
+            this.slack = solution != null ? solution.getSlack() : -1;
+            this.properties = properties;
+        }
+
+        /**
+         * @return Representation of this result as a line in the report.
+         */
+        @NotNull
+        String toReportLine() {
+            return fileName + '\t' + status + '\t' + moves + '\t' + slack + '\t' + message.replaceAll("[\t\r\n]", " ");
+        }
+    }
+
+    /**
+     * Path to the map directory.
+     */
+    @NotNull
+    private final Path mapDirectory;
+    /**
+     * Number of worker threads.
+     */
+    private final int parallelism;
+
+    public BatchValidator(@NotNull final Path mapDirectory) {
+        this(mapDirectory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param mapDirectory Directory containing the maps to validate.
+     * @param parallelism  Number of worker threads.
+     * @throws IllegalArgumentException if {@code parallelism} is not positive.
+     */
+    public BatchValidator(@NotNull final Path mapDirectory, final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be a positive value");
+        }
+
+        this.mapDirectory = mapDirectory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Lists all maps in the map directory, in the same order as {@link controllers.LevelManager}.
+     *
+     * @return Paths of all maps in the directory.
+     * @throws IOException if the directory cannot be read.
+     */
+    @NotNull
+    private List<Path> listMaps() throws IOException {
+        try (Stream<Path> stream = Files.walk(mapDirectory, 1)) {
+            return stream
+                    .filter(f -> f.toFile().isFile())
+                    .filter(f -> f.getFileName().toString().endsWith(".map")
+                            || f.getFileName().toString().endsWith(BinaryMapFormat.EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Validates all maps in the map directory.
+     *
+     * @return Results of every map, in the same order as the maps are listed.
+     * @throws IOException if the directory cannot be read.
+     */
+    @NotNull
+    public List<Result> validateAll() throws IOException {
+        return validateAll(false);
+    }
+
+    /**
+     * Validates all maps in the map directory.
+     *
+     * @param keepProperties Whether the result of each valid map keeps its parsed {@link Result#properties}, so that
+     *                       the map does not need to be parsed again.
+     * @return Results of every map, in the same order as the maps are listed.
+     * @throws IOException if the directory cannot be read.
+     */
+    @NotNull
+    List<Result> validateAll(final boolean keepProperties) throws IOException {
+        final var maps = listMaps();
+
+        final var pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> maps.parallelStream()
+                    .map(path -> validate(path, keepProperties))
+                    .collect(Collectors.toList())
+            ).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Validation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Validation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Validates a single map.
+     *
+     * @param path Path to the map.
+     * @return Result of the validation.
+     */
+    @NotNull
+    public static Result validate(@NotNull final Path path) {
+        return validate(path, false);
+    }
+
+    @NotNull
+    private static Result validate(@NotNull final Path path, final boolean keepProperties) {
+        final var fileName = path.getFileName().toString();
+
+        final PackedGameProperties prop;
+        try {
+            prop = new Deserializer(path).parsePackedGameFile();
+        } catch (FileNotFoundException | InvalidMapException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            return new Result(fileName, Status.ERROR, String.valueOf(e.getMessage()));
+        }
+
+        try {
+            final var error = LevelValidator.checkValidity(prop.grid, prop.delay);
+            if (error.isPresent()) {
+                return new Result(fileName, Status.INVALID, error.get());
+            }
+
+            final var solver = LevelValidator.createSolver(prop);
+            final var solution = solver.solve();
+            if (solution == null && solver.isExhaustive()) {
+                return new Result(fileName, Status.INVALID, LevelValidator.MSG_UNSOLVABLE);
+            }
+            return new Result(fileName, Status.OK, "", solution, keepProperties ? prop : null);
+        } catch (IllegalArgumentException e) {
+            return new Result(fileName, Status.ERROR, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes a report of the validation results.
+     *
+     * @param results Results to write.
+     * @param out     Writer to write the report to.
+     */
+    public static void writeReport(@NotNull final List<Result> results, @NotNull final PrintWriter out) {
+        out.println("file\tstatus\tmoves\tslack\tmessage");
+        for (var result : results) {
+            out.println(result.toReportLine());
+        }
+        out.flush();
+    }
+
+    /**
+     * Entry point of the headless validator.
+     *
+     * <p>
+     * Usage: {@code --validate <map directory> [report file] [threads]}. The report is written to standard output if a
+     * report file is not given. Exits with status {@code 1} if any map fails validation.
+     * </p>
+     *
+     * @param args Arguments, excluding {@code --validate}.
+     */
+    public static void main(@NotNull String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: --validate <map directory> [report file] [threads]");
+            System.exit(2);
+        }
+
+        final var mapDirectory = Paths.get(args[0]);
+        final var reportPath = args.length >= 2 ? Paths.get(args[1]) : null;
+
+        int failed;
+        try {
+            final var validator = args.length == 3
+                    ? new BatchValidator(mapDirectory, Integer.parseInt(args[2]))
+                    : new BatchValidator(mapDirectory);
+
+            final var startTime = System.nanoTime();
+            final var results = validator.validateAll();
+            final var elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+
+            if (reportPath != null) {
+                try (var out = new PrintWriter(Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8))) {
+                    writeReport(results, out);
+                }
+            } else {
+                final var out = new PrintWriter(new BufferedWriter(
+                        new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+                writeReport(results, out);
+            }
+
+            failed = (int) results.stream().filter(it -> it.status != Status.OK).count();
+            System.err.println("Validated " + results.size() + " maps in " + elapsedMs + " ms, " + failed + " failed");
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Unable to validate maps: " + e.getMessage());
+            failed = 1;
+        }
+
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
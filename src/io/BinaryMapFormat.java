@@ -0,0 +1,331 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.map.CellGrid;
+import models.map.cells.TerminationCell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reader and writer of the binary map format.
+ *
+ * <p>
+ * The binary format stores the same information as the text format, and a map can be converted between the two
+ * formats without any loss. All integers are big-endian, and {@code varint} denotes an unsigned LEB128 integer.
+ * </p>
+ * <ul>
+ * <li>{@code int32} magic number {@link BinaryMapFormat#MAGIC}, i.e. {@code "PIPE"} in ASCII</li>
+ * <li>{@code uint8} version, currently {@link BinaryMapFormat#VERSION}</li>
+ * <li>{@code uint8} flags: {@link BinaryMapFormat#FLAG_PIPES} if the initial pipes are present, and
+ * {@link BinaryMapFormat#FLAG_WEIGHTS} if the pipe weights are present</li>
+ * <li>{@code varint} rows, {@code varint} columns, {@code int32} delay</li>
+ * <li>Tiles in row-major order, run-length encoded as pairs of {@code uint8} packed tile (as stored in
+ * {@link CellGrid}) and {@code varint} run length</li>
+ * <li>If present, {@code varint} number of initial pipes, followed by the {@code uint8} shape ordinal of each pipe</li>
+ * <li>If present, {@code varint} weight of each shape, in the order of the shape ordinals</li>
+ * <li>{@code int32} CRC-32 of all preceding bytes</li>
+ * </ul>
+ */
+public final class BinaryMapFormat {
+
+    /**
+     * Magic number at the start of every binary map.
+     */
+    public static final int MAGIC = 0x50495045;
+    /**
+     * Current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * File extension of binary maps.
+     */
+    public static final String EXTENSION = ".pmap";
+
+    private static final int FLAG_PIPES = 1;
+    private static final int FLAG_WEIGHTS = 1 << 1;
+
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+
+    private BinaryMapFormat() {
+    }
+
+    /**
+     * @param path Path to a file.
+     * @return Whether the file starts with the magic number of the binary format.
+     * @throws IOException if the file cannot be read.
+     */
+    public static boolean isBinary(@NotNull final Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            final var header = in.readNBytes(4);
+            return header.length == 4 && ByteBuffer.wrap(header).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Writes a game in the binary format.
+     *
+     * @param prop Properties of the game.
+     * @param path Path to write to.
+     * @throws IOException              if an I/O exception has occurred.
+     * @throws IllegalArgumentException if the map contains a tile which cannot be represented in the text format.
+     */
+    public static void write(@NotNull final PackedGameProperties prop, @NotNull final Path path) throws IOException {
+        try (var out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            write(prop, out);
+        }
+    }
+
+    /**
+     * Writes a game in the binary format.
+     *
+     * @param prop Properties of the game.
+     * @param os   Stream to write to. The stream is not closed.
+     * @throws IOException              if an I/O exception has occurred.
+     * @throws IllegalArgumentException if the map contains a tile which cannot be represented in the text format.
+     */
+    public static void write(@NotNull final PackedGameProperties prop, @NotNull final OutputStream os)
+            throws IOException {
+        final var grid = prop.grid;
+        for (int i = 0; i < grid.size(); ++i) {
+            if (!isTextTile(grid, i)) {
+                throw new IllegalArgumentException("Tile at row " + grid.rowOf(i) + ", column " + grid.colOf(i)
+                        + " cannot be represented in a map file");
+            }
+        }
+
+        final var crc = new CRC32();
+        final var out = new DataOutputStream(new CheckedOutputStream(os, crc));
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte((prop.pipes != null ? FLAG_PIPES : 0) | (prop.pipeWeights != null ? FLAG_WEIGHTS : 0));
+        writeVarint(out, grid.getRows());
+        writeVarint(out, grid.getCols());
+        out.writeInt(prop.delay);
+
+        var i = 0;
+        while (i < grid.size()) {
+            final var tile = grid.get(i);
+            var run = 1;
+            while (i + run < grid.size() && grid.get(i + run) == tile) {
+                ++run;
+            }
+
+            out.writeByte(tile);
+            writeVarint(out, run);
+            i += run;
+        }
+
+        if (prop.pipes != null) {
+            writeVarint(out, prop.pipes.size());
+            for (var pipe : prop.pipes) {
+                out.writeByte(pipe.getShape().ordinal());
+            }
+        }
+        if (prop.pipeWeights != null) {
+            for (var weight : prop.pipeWeights) {
+                writeVarint(out, weight);
+            }
+        }
+
+        out.flush();
+        // Written directly to the underlying stream, so that it is not part of the checksum.
+        new DataOutputStream(os).writeInt((int) crc.getValue());
+        os.flush();
+    }
+
+    private static void writeVarint(@NotNull final DataOutputStream out, int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a game in the binary format.
+     *
+     * @param path Path to read from.
+     * @return Properties of the game.
+     * @throws IOException         if an I/O exception has occurred.
+     * @throws InvalidMapException if the file is not a valid binary map.
+     */
+    @NotNull
+    public static PackedGameProperties read(@NotNull final Path path) throws IOException {
+        return read(Files.readAllBytes(path));
+    }
+
+    /**
+     * Reads a game in the binary format.
+     *
+     * @param bytes Content of the binary map.
+     * @return Properties of the game.
+     * @throws InvalidMapException if the content is not a valid binary map.
+     */
+    @NotNull
+    public static PackedGameProperties read(@NotNull final byte[] bytes) {
+        if (bytes.length < 4 + 2 + 4) {
+            throw new InvalidMapException("Binary map is truncated");
+        }
+
+        final var crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        final var buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt(bytes.length - 4) != (int) crc.getValue()) {
+            throw new InvalidMapException("Binary map is corrupted: checksum mismatch");
+        }
+        buffer.limit(bytes.length - 4);
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new InvalidMapException("Not a binary map");
+            }
+            final var version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new InvalidMapException("Unsupported binary map version " + version);
+            }
+            final var flags = buffer.get() & 0xFF;
+
+            final var rows = readVarint(buffer);
+            final var cols = readVarint(buffer);
+            final var delay = buffer.getInt();
+            if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE) {
+                throw new InvalidMapException("Invalid map size " + rows + "x" + cols);
+            }
+
+            final var grid = new CellGrid(rows, cols);
+            var i = 0;
+            while (i < grid.size()) {
+                final var tile = buffer.get();
+                final var run = readVarint(buffer);
+                if (run <= 0 || run > grid.size() - i) {
+                    throw new InvalidMapException("Invalid run length " + run + " at tile " + i);
+                }
+
+                for (final var end = i + run; i < end; ++i) {
+                    grid.set(i, tile);
+                    if (!isTextTile(grid, i)) {
+                        throw new InvalidMapException("Invalid tile " + tile + " at row " + grid.rowOf(i)
+                                + ", column " + grid.colOf(i));
+                    }
+                }
+            }
+
+            List<Pipe> pipes = null;
+            if ((flags & FLAG_PIPES) != 0) {
+                final var count = readVarint(buffer);
+                if (count > buffer.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+
+                pipes = new ArrayList<>(count);
+                for (int p = 0; p < count; ++p) {
+                    final var shape = buffer.get() & 0xFF;
+                    if (shape >= SHAPES.length) {
+                        throw new InvalidMapException("Invalid pipe shape " + shape);
+                    }
+                    pipes.add(new Pipe(SHAPES[shape]));
+                }
+            }
+
+            int[] weights = null;
+            if ((flags & FLAG_WEIGHTS) != 0) {
+                weights = new int[SHAPES.length];
+                var sum = 0L;
+                for (int s = 0; s < weights.length; ++s) {
+                    weights[s] = readVarint(buffer);
+                    sum += weights[s];
+                }
+                if (sum == 0 || sum > Integer.MAX_VALUE) {
+                    throw new InvalidMapException("Invalid pipe weights in binary map");
+                }
+            }
+
+            if (buffer.hasRemaining()) {
+                throw new InvalidMapException("Unexpected data after the end of the binary map");
+            }
+            return new PackedGameProperties(grid, delay, pipes, weights);
+        } catch (BufferUnderflowException e) {
+            throw new InvalidMapException("Binary map is truncated");
+        }
+    }
+
+    private static int readVarint(@NotNull final ByteBuffer buffer) {
+        var value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final var b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new InvalidMapException("Invalid varint in binary map");
+    }
+
+    /**
+     * @param grid  Grid containing the tile.
+     * @param index Index of the tile.
+     * @return Whether the text format represents the tile in the same way, i.e. whether it is a wall, an empty cell, or
+     * an unfilled termination cell whose type matches its position.
+     */
+    private static boolean isTextTile(@NotNull final CellGrid grid, final int index) {
+        final var tile = grid.get(index);
+        final var ch = toChar(tile);
+        if (ch == null) {
+            return false;
+        }
+
+        final var row = grid.rowOf(index);
+        final var col = grid.colOf(index);
+        final var isBorder = row == 0 || row == grid.getRows() - 1 || col == 0 || col == grid.getCols() - 1;
+        final var type = isBorder ? TerminationCell.Type.SINK : TerminationCell.Type.SOURCE;
+        return CellGrid.fromChar(ch, type) == tile;
+    }
+
+    /**
+     * @param tile Packed representation of a tile.
+     * @return Character of the tile in the text format, or {@code null} if the text format cannot represent the tile.
+     */
+    @Nullable
+    private static Character toChar(byte tile) {
+        switch (CellGrid.kindOf(tile)) {
+            case CellGrid.WALL:
+                return 'W';
+            case CellGrid.FILLABLE:
+                return '.';
+            default:
+                switch (CellGrid.directionOf(tile)) {
+                    case UP:
+                        return '^';
+                    case RIGHT:
+                        return '>';
+                    case DOWN:
+                        return 'v';
+                    default:
+                        return '<';
+                }
+        }
+    }
+}
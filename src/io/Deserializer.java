@@ -1,7 +1,9 @@
 package io;
 
 import models.FXGame;
+import models.PipeGenerator;
 import models.exceptions.InvalidMapException;
+import models.map.CellGrid;
 import models.map.Map;
 import models.map.cells.Cell;
 import models.map.cells.TerminationCell;
@@ -9,15 +11,17 @@ import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import textgame.game.Game;
-import util.Coordinate;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * A deserializer for converting a map file into a {@link Game}.
@@ -51,7 +55,8 @@ public class Deserializer {
     @Nullable
     public Game parseGame() {
         final var properties = parseGameFile();
-        return new Game(properties.rows, properties.cols, properties.delay, properties.cells, properties.pipes);
+        return new Game(properties.rows, properties.cols, properties.delay, properties.cells, properties.pipes,
+                new PipeGenerator(properties.pipeWeights));
     }
 
     /**
@@ -63,66 +68,198 @@ public class Deserializer {
     @Nullable
     public FXGame parseFXGame() {
         final var properties = parseGameFile();
-        return new FXGame(properties.rows, properties.cols, properties.delay, properties.cells, properties.pipes);
+        return new FXGame(properties.rows, properties.cols, properties.delay, properties.cells, properties.pipes,
+                new PipeGenerator(properties.pipeWeights));
     }
 
     /**
      * Parses a game file into a {@link GameProperties} object.
      *
+     * <p>
+     * The file is read once from start to end, and the map is filled in row by row as it is read. Files in the
+     * {@link BinaryMapFormat} are also accepted.
+     * </p>
+     *
      * @return An instance of {@link GameProperties}.
-     * @throws InvalidMapException if the map cannot be parsed.
+     * @throws InvalidMapException if the map cannot be parsed. The exception contains the line and column of the
+     *                             error if it is caused by the content of the file.
      */
     @NotNull
     public GameProperties parseGameFile() {
-        try (var reader = new BufferedReader(new FileReader(path.toFile()))) {
-            String line;
+        try {
+            if (BinaryMapFormat.isBinary(path)) {
+                return BinaryMapFormat.read(path).toGameProperties();
+            }
+        } catch (IOException ioe) {
+            throw new InvalidMapException(ioe);
+        }
 
-            var rows = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                rows = Integer.parseInt(line);
-            } else {
-                throw new InvalidMapException("Unexpected EOF when parsing number of rows");
+        try (var reader = new MapReader(new BufferedReader(new FileReader(path.toFile())))) {
+            final var rows = parseInt(reader, "number of rows");
+            final var cols = parseInt(reader, "number of columns");
+            final var delay = parseInt(reader, "amount of delay");
+            if (rows <= 0 || cols <= 0) {
+                throw new InvalidMapException("Map size must be positive, got " + rows + "x" + cols);
             }
 
-            var cols = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                cols = Integer.parseInt(line);
-            } else {
-                throw new InvalidMapException("Unexpected EOF when parsing number of columns");
+            final var grid = new CellGrid(rows, cols);
+            for (int r = 0; r < rows; ++r) {
+                final var line = reader.nextLine();
+                if (line == null) {
+                    throw new InvalidMapException("Unexpected EOF when parsing row " + r + " of map",
+                            reader.getLineNumber() + 1, 1);
+                }
+
+                parseRow(grid, r, line, reader.getLineNumber());
             }
 
-            var delay = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                delay = Integer.parseInt(line);
-            } else {
-                throw new InvalidMapException("Unexpected EOF when parsing amount of delay");
+            List<Pipe> defaultPipes = null;
+            int[] pipeWeights = null;
+            String s = reader.nextLine();
+            if (s != null && !isPipeWeights(s)) {
+                defaultPipes = parsePipes(s, reader.getLineNumber());
+
+                s = reader.nextLine();
+            }
+            if (s != null) {
+                try {
+                    pipeWeights = parsePipeWeights(s);
+                } catch (InvalidMapException e) {
+                    throw new InvalidMapException(e.getMessage(), reader.getLineNumber(), 1);
+                }
+            }
+
+            return new GameProperties(rows, cols, grid.toCells(), delay, defaultPipes, pipeWeights);
+        } catch (IOException ioe) {
+            throw new InvalidMapException(ioe);
+        }
+    }
+
+    /**
+     * Parses a game file into a {@link PackedGameProperties} object.
+     *
+     * <p>
+     * The file is memory-mapped, and the header and the map are decoded directly from the mapped bytes into the grid,
+     * without creating a {@link String} for each line. This is preferred for very large maps. The file must be encoded
+     * in ASCII or a superset of it. Files in the {@link BinaryMapFormat} are also accepted.
+     * </p>
+     *
+     * @return An instance of {@link PackedGameProperties}.
+     * @throws InvalidMapException if the map cannot be parsed. The exception contains the line and column of the
+     *                             error if it is caused by the content of the file.
+     */
+    @NotNull
+    public PackedGameProperties parsePackedGameFile() {
+        try {
+            if (BinaryMapFormat.isBinary(path)) {
+                return BinaryMapFormat.read(path);
+            }
+        } catch (IOException ioe) {
+            throw new InvalidMapException(ioe);
+        }
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new InvalidMapException("Map file is too large: " + channel.size() + " bytes");
+            }
+
+            final var reader = new MappedMapReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            final var rows = reader.nextInt("number of rows");
+            final var cols = reader.nextInt("number of columns");
+            final var delay = reader.nextInt("amount of delay");
+            if (rows <= 0 || cols <= 0) {
+                throw new InvalidMapException("Map size must be positive, got " + rows + "x" + cols);
             }
 
-            final var mapRep = new ArrayList<String>();
+            final var grid = new CellGrid(rows, cols);
             for (int r = 0; r < rows; ++r) {
-                line = getFirstNonEmptyLine(reader);
-                if (line == null) {
-                    throw new InvalidMapException("Unexpected EOF when parsing row " + r + " of map");
+                if (!reader.nextLine()) {
+                    throw new InvalidMapException("Unexpected EOF when parsing row " + r + " of map",
+                            reader.getLineNumber() + 1, 1);
                 }
 
-                mapRep.add(line);
+                reader.readRow(grid, r);
             }
-            final var cells = parseString(rows, cols, String.join("\n", mapRep));
 
             List<Pipe> defaultPipes = null;
-            String s = getFirstNonEmptyLine(reader);
+            int[] pipeWeights = null;
+            String s = reader.nextLine() ? reader.lineToString() : null;
+            if (s != null && !isPipeWeights(s)) {
+                defaultPipes = parsePipes(s, reader.getLineNumber());
+
+                s = reader.nextLine() ? reader.lineToString() : null;
+            }
             if (s != null) {
-                defaultPipes = Arrays.stream(s.split(","))
-                        .map(Pipe::fromString)
-                        .collect(Collectors.toList());
+                try {
+                    pipeWeights = parsePipeWeights(s);
+                } catch (InvalidMapException e) {
+                    throw new InvalidMapException(e.getMessage(), reader.getLineNumber(), 1);
+                }
             }
 
-            return new GameProperties(rows, cols, cells, delay, defaultPipes);
+            return new PackedGameProperties(grid, delay, defaultPipes, pipeWeights);
         } catch (IOException ioe) {
             throw new InvalidMapException(ioe);
         }
     }
 
+    /**
+     * Reads the next line as an integer.
+     *
+     * @param reader Reader to read from.
+     * @param name   Name of the value, for error messages.
+     * @return The parsed integer.
+     * @throws IOException         if the reader fails to read a line.
+     * @throws InvalidMapException if there are no more lines, or the line is not an integer.
+     */
+    private static int parseInt(@NotNull final MapReader reader, @NotNull final String name) throws IOException {
+        final var line = reader.nextLine();
+        if (line == null) {
+            throw new InvalidMapException("Unexpected EOF when parsing " + name, reader.getLineNumber() + 1, 1);
+        }
+
+        try {
+            return Integer.parseInt(line.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidMapException("Expected " + name + ", got '" + line.trim() + "'", reader.getLineNumber(),
+                    1);
+        }
+    }
+
+    /**
+     * Parses the comma-separated list of default pipes.
+     *
+     * @param line       Line to parse.
+     * @param lineNumber Line number of {@code line} in the map file.
+     * @return List of pipes in the line.
+     * @throws InvalidMapException if any of the pipes is invalid.
+     */
+    @NotNull
+    private static List<Pipe> parsePipes(@NotNull final String line, int lineNumber) {
+        final var pipes = new ArrayList<Pipe>();
+
+        var start = 0;
+        while (start <= line.length()) {
+            var end = line.indexOf(',', start);
+            if (end == -1) {
+                end = line.length();
+            }
+            if (end == line.length() && line.substring(start).isBlank() && !pipes.isEmpty()) {
+                // Allow a trailing comma
+                break;
+            }
+
+            try {
+                pipes.add(Pipe.fromString(line.substring(start, end)));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidMapException("Invalid pipe '" + line.substring(start, end) + "'", lineNumber,
+                        start + 1);
+            }
+            start = end + 1;
+        }
+        return pipes;
+    }
+
     /**
      * Deserializes a map from a {@link String}.
      *
@@ -131,50 +268,363 @@ public class Deserializer {
      * @param cellsRep String representation of the map, with rows delimited by {@code '\n'}.
      * @return A 2D cell array from the string. Note that this cell array may not fully conform to the requirements of
      * an actual game map; The "map conformance" checks are performed in the {@link Map} constructor.
+     * @throws InvalidMapException if the string contains a character which does not represent a cell.
      */
     @NotNull
     public static Cell[][] parseString(final int rows, final int cols, @NotNull final String cellsRep) {
-        var cells = new Cell[rows][cols];
+        return parseGrid(rows, cols, cellsRep).toCells();
+    }
+
+    /**
+     * Deserializes a map from a {@link String} into its packed representation.
+     *
+     * @param rows     Rows of the given map.
+     * @param cols     Columns of the given map.
+     * @param cellsRep String representation of the map, with rows delimited by {@code '\n'}.
+     * @return A {@link CellGrid} from the string. Note that this grid may not fully conform to the requirements of an
+     * actual game map; The "map conformance" checks are performed in the {@link Map} constructor.
+     * @throws InvalidMapException if the string has less than {@code rows} rows or a row has less than {@code cols}
+     *                             cells, or if it contains a character which does not represent a cell. The line and
+     *                             column of the exception are relative to the start of the string.
+     */
+    @NotNull
+    public static CellGrid parseGrid(final int rows, final int cols, @NotNull final String cellsRep) {
+        var grid = new CellGrid(rows, cols);
+
+        var start = 0;
         for (int r = 0; r < rows; ++r) {
-            for (int c = 0; c < cols; ++c) {
-                var coord = new Coordinate(r, c);
-                var ch = cellsRep.lines().skip(r).findFirst().orElseThrow().charAt(c);
+            if (start > cellsRep.length()) {
+                throw new InvalidMapException("Expected " + rows + " rows, found " + r, r + 1, 1);
+            }
 
-                Cell cell;
-                if (r == 0 || r == rows - 1 || c == 0 || c == cols - 1) {
-                    cell = Cell.fromChar(ch, coord, TerminationCell.Type.SINK);
-                } else {
-                    cell = Cell.fromChar(ch, coord, TerminationCell.Type.SOURCE);
+            var end = cellsRep.indexOf('\n', start);
+            if (end == -1) {
+                end = cellsRep.length();
+            }
+            final var lineEnd = end > start && cellsRep.charAt(end - 1) == '\r' ? end - 1 : end;
+
+            parseRow(grid, r, cellsRep.substring(start, lineEnd), r + 1);
+            start = end + 1;
+        }
+
+        return grid;
+    }
+
+    /**
+     * Fills a row of a grid from its string representation.
+     *
+     * @param grid       Grid to fill.
+     * @param r          Index of the row.
+     * @param line       String representation of the row. Characters after the last column are ignored.
+     * @param lineNumber Line number of {@code line}, for error messages.
+     * @throws InvalidMapException if the row is too short, or contains a character which does not represent a cell.
+     */
+    private static void parseRow(@NotNull final CellGrid grid, final int r, @NotNull final String line,
+                                 final int lineNumber) {
+        final var rows = grid.getRows();
+        final var cols = grid.getCols();
+        if (line.length() < cols) {
+            throw shortRowException(r, cols, line.length(), lineNumber);
+        }
+
+        final var rowStart = grid.indexOf(r, 0);
+        final var isBorderRow = r == 0 || r == rows - 1;
+        for (int c = 0; c < cols; ++c) {
+            final var ch = line.charAt(c);
+
+            int tile;
+            if (isBorderRow || c == 0 || c == cols - 1) {
+                tile = CellGrid.fromChar(ch, TerminationCell.Type.SINK);
+            } else {
+                tile = CellGrid.fromChar(ch, TerminationCell.Type.SOURCE);
+            }
+            if (tile == -1) {
+                throw unknownCellException(ch, r, c, lineNumber);
+            }
+
+            grid.set(rowStart + c, (byte) tile);
+        }
+    }
+
+    @NotNull
+    private static InvalidMapException shortRowException(int r, int cols, int length, int lineNumber) {
+        return new InvalidMapException("Expected " + cols + " cells in row " + r + ", found " + length, lineNumber,
+                length + 1);
+    }
+
+    @NotNull
+    private static InvalidMapException unknownCellException(char ch, int r, int c, int lineNumber) {
+        return new InvalidMapException("Unknown cell character '" + ch + "' at row " + r + ", column " + c,
+                lineNumber, c + 1);
+    }
+
+    /**
+     * @param line Line of a map file.
+     * @return Whether the line specifies the weights of randomly-generated pipes.
+     */
+    private static boolean isPipeWeights(@NotNull final String line) {
+        return line.indexOf('=') != -1;
+    }
+
+    /**
+     * Parses the weights of randomly-generated pipes.
+     *
+     * <p>
+     * The weights are specified as comma-separated {@code <shape>=<weight>} pairs, e.g. {@code HZ=2,VT=2,CR=1}.
+     * Shapes which are not specified have a weight of zero.
+     * </p>
+     *
+     * @param line Line to parse.
+     * @return Relative weight of each shape, indexed by the ordinal of {@link Pipe.Shape}.
+     * @throws InvalidMapException if the line is not a valid weight specification.
+     */
+    @NotNull
+    static int[] parsePipeWeights(@NotNull final String line) {
+        final var weights = new int[Pipe.Shape.values().length];
+        for (var entry : line.split(",")) {
+            final var separator = entry.indexOf('=');
+            if (separator == -1) {
+                throw new InvalidMapException("Expected <shape>=<weight> in pipe weights, got '" + entry.trim() + "'");
+            }
+
+            try {
+                final var shape = Pipe.fromString(entry.substring(0, separator)).getShape();
+                final var weight = Integer.parseInt(entry.substring(separator + 1).trim());
+                if (weight < 0) {
+                    throw new InvalidMapException("Weight of " + shape + " must not be negative");
                 }
 
-                cells[r][c] = cell;
+                weights[shape.ordinal()] = weight;
+            } catch (IllegalArgumentException e) {
+                throw new InvalidMapException("Invalid pipe weight '" + entry.trim() + "': " + e.getMessage());
             }
         }
 
-        return cells;
+        if (Arrays.stream(weights).allMatch(w -> w == 0)) {
+            throw new InvalidMapException("At least one pipe weight must be positive");
+        }
+        return weights;
     }
 
     /**
-     * Returns the first non-empty and non-comment line from the reader.
+     * Reader of map files, which skips empty and comment lines and keeps track of the current line number.
+     */
+    private static final class MapReader implements Closeable {
+
+        @NotNull
+        private final BufferedReader reader;
+        /**
+         * Line number of the last line read, starting from 1.
+         */
+        private int lineNumber = 0;
+
+        MapReader(@NotNull final BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return First line that is a parseable line, or {@code null} there are no lines to read.
+         * @throws IOException if the reader fails to read a line.
+         */
+        @Nullable
+        String nextLine() throws IOException {
+            do {
+                String s = reader.readLine();
+                if (s == null) {
+                    return null;
+                }
+                ++lineNumber;
+
+                if (s.isBlank() || s.startsWith("#")) {
+                    continue;
+                }
+
+                return s;
+            } while (true);
+        }
+
+        /**
+         * @return Line number of the last line read, starting from 1.
+         */
+        int getLineNumber() {
+            return lineNumber;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reader of memory-mapped map files, which skips empty and comment lines and keeps track of the current line
+     * number.
      *
-     * @param br {@link BufferedReader} to read from.
-     * @return First line that is a parseable line, or {@code null} there are no lines to read.
-     * @throws IOException if the reader fails to read a line.
+     * <p>
+     * Each byte of the file is treated as one character, and lines are only converted into {@link String} on request.
+     * </p>
      */
-    @Nullable
-    private String getFirstNonEmptyLine(@NotNull final BufferedReader br) throws IOException {
-        do {
+    private static final class MappedMapReader {
 
-            String s = br.readLine();
+        @NotNull
+        private final ByteBuffer buffer;
+        /**
+         * Position of the start of the next line.
+         */
+        private int position = 0;
+        /**
+         * Line number of the last line read, starting from 1.
+         */
+        private int lineNumber = 0;
+        /**
+         * Position of the first character of the last line read.
+         */
+        private int lineStart = 0;
+        /**
+         * Position after the last character of the last line read, excluding the line terminator.
+         */
+        private int lineEnd = 0;
 
-            if (s == null) {
-                return null;
+        MappedMapReader(@NotNull final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Advances to the next parseable line.
+         *
+         * @return {@code false} if there are no lines to read.
+         */
+        boolean nextLine() {
+            final var limit = buffer.limit();
+            while (position < limit) {
+                final var start = position;
+                var end = start;
+                while (end < limit && buffer.get(end) != '\n') {
+                    ++end;
+                }
+                position = end + 1;
+                ++lineNumber;
+
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    --end;
+                }
+                if (isBlank(start, end) || buffer.get(start) == '#') {
+                    continue;
+                }
+
+                lineStart = start;
+                lineEnd = end;
+                return true;
             }
-            if (s.isBlank() || s.startsWith("#")) {
-                continue;
+            return false;
+        }
+
+        private boolean isBlank(int start, int end) {
+            for (int i = start; i < end; ++i) {
+                if ((buffer.get(i) & 0xFF) > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return Line number of the last line read, starting from 1.
+         */
+        int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return The last line read.
+         */
+        @NotNull
+        String lineToString() {
+            final var bytes = new byte[lineEnd - lineStart];
+            for (int i = 0; i < bytes.length; ++i) {
+                bytes[i] = buffer.get(lineStart + i);
+            }
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Reads the next line as an integer.
+         *
+         * @param name Name of the value, for error messages.
+         * @return The parsed integer.
+         * @throws InvalidMapException if there are no more lines, or the line is not an integer.
+         */
+        int nextInt(@NotNull final String name) {
+            if (!nextLine()) {
+                throw new InvalidMapException("Unexpected EOF when parsing " + name, lineNumber + 1, 1);
             }
 
-            return s;
-        } while (true);
+            var start = lineStart;
+            var end = lineEnd;
+            while ((buffer.get(start) & 0xFF) <= ' ') {
+                ++start;
+            }
+            while ((buffer.get(end - 1) & 0xFF) <= ' ') {
+                --end;
+            }
+
+            final var negative = buffer.get(start) == '-';
+            var i = negative || buffer.get(start) == '+' ? start + 1 : start;
+            if (i == end) {
+                throw new InvalidMapException("Expected " + name + ", got '" + lineToString().trim() + "'",
+                        lineNumber, 1);
+            }
+
+            long value = 0;
+            for (; i < end; ++i) {
+                final var digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                    throw new InvalidMapException("Expected " + name + ", got '" + lineToString().trim() + "'",
+                            lineNumber, 1);
+                }
+                value = value * 10 + digit;
+            }
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new InvalidMapException("Expected " + name + ", got '" + lineToString().trim() + "'",
+                        lineNumber, 1);
+            }
+            return (int) value;
+        }
+
+        /**
+         * Fills a row of a grid from the last line read.
+         *
+         * @param grid Grid to fill.
+         * @param r    Index of the row.
+         * @throws InvalidMapException if the row is too short, or contains a character which does not represent a
+         *                             cell.
+         * @see Deserializer#parseRow(CellGrid, int, String, int)
+         */
+        void readRow(@NotNull final CellGrid grid, final int r) {
+            final var rows = grid.getRows();
+            final var cols = grid.getCols();
+            if (lineEnd - lineStart < cols) {
+                throw shortRowException(r, cols, lineEnd - lineStart, lineNumber);
+            }
+
+            final var rowStart = grid.indexOf(r, 0);
+            final var isBorderRow = r == 0 || r == rows - 1;
+            for (int c = 0; c < cols; ++c) {
+                final var ch = (char) (buffer.get(lineStart + c) & 0xFF);
+
+                int tile;
+                if (isBorderRow || c == 0 || c == cols - 1) {
+                    tile = CellGrid.fromChar(ch, TerminationCell.Type.SINK);
+                } else {
+                    tile = CellGrid.fromChar(ch, TerminationCell.Type.SOURCE);
+                }
+                if (tile == -1) {
+                    throw unknownCellException(ch, r, c, lineNumber);
+                }
+
+                grid.set(rowStart + c, (byte) tile);
+            }
+        }
     }
 }
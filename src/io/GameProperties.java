@@ -18,6 +18,12 @@ public class GameProperties {
     public Cell[][] cells;
     @Nullable
     public List<Pipe> pipes;
+    /**
+     * Relative weight of each shape for randomly-generated pipes, indexed by the ordinal of {@link Pipe.Shape}, or
+     * {@code null} if every shape is equally likely.
+     */
+    @Nullable
+    public int[] pipeWeights;
 
     public GameProperties(int rows, int cols) {
         this.rows = rows;
@@ -42,4 +48,11 @@ public class GameProperties {
 
         this.pipes = pipes;
     }
+
+    public GameProperties(int rows, int cols, @NotNull Cell[][] cells, int delay, @Nullable List<Pipe> pipes,
+                          @Nullable int[] pipeWeights) {
+        this(rows, cols, cells, delay, pipes);
+
+        this.pipeWeights = pipeWeights;
+    }
 }
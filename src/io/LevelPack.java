@@ -0,0 +1,411 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A single-file archive of many levels, with an index allowing any level to be read without reading the others.
+ *
+ * <p>
+ * All integers are big-endian. A pack consists of:
+ * </p>
+ * <ul>
+ * <li>{@code int32} magic number {@link LevelPack#MAGIC}, i.e. {@code "PPAK"} in ASCII</li>
+ * <li>{@code uint8} version, currently {@link LevelPack#VERSION}</li>
+ * <li>{@code int32} number of levels, {@code int32} length of the index in bytes, {@code int32} CRC-32 of the
+ * index</li>
+ * <li>The index, containing for each level: {@code uint16} length and UTF-8 bytes of the name, {@code int32} rows,
+ * {@code int32} columns, {@code int32} difficulty, {@code int64} offset of the level from the start of the pack, and
+ * {@code int32} length of the level in bytes. Levels are sorted by name, and names are unique.</li>
+ * <li>The levels, each in the {@link BinaryMapFormat}</li>
+ * </ul>
+ * <p>
+ * Opening a pack only reads its index, so the time taken to open a pack does not depend on the size of its levels.
+ * Each level is read by seeking directly to its offset.
+ * </p>
+ */
+public final class LevelPack implements Closeable {
+
+    /**
+     * Magic number at the start of every level pack.
+     */
+    public static final int MAGIC = 0x5050414B;
+    /**
+     * Current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * File extension of level packs.
+     */
+    public static final String EXTENSION = ".ppak";
+    /**
+     * Difficulty of levels whose difficulty is not known.
+     */
+    public static final int UNKNOWN_DIFFICULTY = -1;
+
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 4 + 4;
+    /**
+     * Size of an index entry, excluding its name.
+     */
+    private static final int MIN_ENTRY_SIZE = 2 + 4 + 4 + 4 + 8 + 4;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    @NotNull
+    private final FileChannel channel;
+    @NotNull
+    private final String[] names;
+    @NotNull
+    private final int[] rows;
+    @NotNull
+    private final int[] cols;
+    @NotNull
+    private final int[] difficulties;
+    @NotNull
+    private final long[] offsets;
+    @NotNull
+    private final int[] lengths;
+
+    private LevelPack(@NotNull FileChannel channel, int count) {
+        this.channel = channel;
+        this.names = new String[count];
+        this.rows = new int[count];
+        this.cols = new int[count];
+        this.difficulties = new int[count];
+        this.offsets = new long[count];
+        this.lengths = new int[count];
+    }
+
+    /**
+     * Opens a level pack and reads its index. The pack must be closed after use.
+     *
+     * @param path Path to the level pack.
+     * @return The opened level pack.
+     * @throws IOException         if an I/O exception has occurred.
+     * @throws InvalidMapException if the file is not a valid level pack.
+     */
+    @NotNull
+    public static LevelPack open(@NotNull final Path path) throws IOException {
+        final var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final var header = readFully(channel, 0, HEADER_SIZE, "header");
+            if (header.getInt() != MAGIC) {
+                throw new InvalidMapException("Not a level pack");
+            }
+            final var version = header.get() & 0xFF;
+            if (version != VERSION) {
+                throw new InvalidMapException("Unsupported level pack version " + version);
+            }
+            final var count = header.getInt();
+            final var indexLength = header.getInt();
+            final var indexCrc = header.getInt();
+            if (count < 0 || indexLength < (long) count * MIN_ENTRY_SIZE
+                    || HEADER_SIZE + (long) indexLength > channel.size()) {
+                throw new InvalidMapException("Level pack header is corrupted");
+            }
+
+            final var index = readFully(channel, HEADER_SIZE, indexLength, "index");
+            final var crc = new CRC32();
+            crc.update(index.array(), 0, indexLength);
+            if ((int) crc.getValue() != indexCrc) {
+                throw new InvalidMapException("Level pack index is corrupted: checksum mismatch");
+            }
+
+            final var pack = new LevelPack(channel, count);
+            pack.readIndex(index, channel.size());
+            return pack;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readIndex(@NotNull final ByteBuffer index, final long fileSize) {
+        try {
+            for (int i = 0; i < names.length; ++i) {
+                final var nameLength = index.getShort() & 0xFFFF;
+                names[i] = new String(index.array(), index.position(), nameLength, StandardCharsets.UTF_8);
+                index.position(index.position() + nameLength);
+                rows[i] = index.getInt();
+                cols[i] = index.getInt();
+                difficulties[i] = index.getInt();
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+
+                if (i > 0 && names[i - 1].compareTo(names[i]) >= 0) {
+                    throw new InvalidMapException("Levels in the level pack are not sorted by name");
+                }
+                if (offsets[i] < HEADER_SIZE || lengths[i] < 0 || offsets[i] + lengths[i] > fileSize) {
+                    throw new InvalidMapException("Level '" + names[i] + "' lies outside of the level pack");
+                }
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new InvalidMapException("Level pack index is truncated");
+        }
+        if (index.hasRemaining()) {
+            throw new InvalidMapException("Unexpected data after the end of the level pack index");
+        }
+    }
+
+    @NotNull
+    private static ByteBuffer readFully(@NotNull final FileChannel channel, final long position, final int length,
+                                        @NotNull final String what) throws IOException {
+        final var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new InvalidMapException("Level pack is truncated: incomplete " + what);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @return Number of levels in this pack.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return Names of all levels in this pack, sorted by name.
+     */
+    @NotNull
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * @param name Name of a level.
+     * @return Index of the level, or a negative value if the level is not in this pack.
+     */
+    public int indexOf(@NotNull final String name) {
+        return Arrays.binarySearch(names, name);
+    }
+
+    @NotNull
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public int getRows(int index) {
+        return rows[index];
+    }
+
+    public int getCols(int index) {
+        return cols[index];
+    }
+
+    /**
+     * @param index Index of the level.
+     * @return Difficulty of the level, or {@link LevelPack#UNKNOWN_DIFFICULTY} if it is not known.
+     */
+    public int getDifficulty(int index) {
+        return difficulties[index];
+    }
+
+    /**
+     * Reads a level from this pack. This method may be called from multiple threads concurrently.
+     *
+     * @param index Index of the level.
+     * @return Properties of the level.
+     * @throws IOException               if an I/O exception has occurred.
+     * @throws InvalidMapException       if the level is corrupted.
+     * @throws IndexOutOfBoundsException if {@code index} is out of range.
+     */
+    @NotNull
+    public PackedGameProperties read(int index) throws IOException {
+        final var buffer = readFully(channel, offsets[index], lengths[index], "level '" + names[index] + "'");
+        final var prop = BinaryMapFormat.read(buffer.array());
+        if (prop.rows != rows[index] || prop.cols != cols[index]) {
+            throw new InvalidMapException("Size of level '" + names[index] + "' does not match the level pack index");
+        }
+        return prop;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Builder of level packs.
+     *
+     * <p>
+     * Each level is encoded when it is added, and levels may be added in any order.
+     * </p>
+     */
+    public static final class Builder {
+
+        private static final class Entry {
+            @NotNull
+            final byte[] name;
+            final int rows;
+            final int cols;
+            final int difficulty;
+            @NotNull
+            final byte[] data;
+
+            Entry(@NotNull byte[] name, int rows, int cols, int difficulty, @NotNull byte[] data) {
+                this.name = name;
+                this.rows = rows;
+                this.cols = cols;
+                this.difficulty = difficulty;
+                this.data = data;
+            }
+        }
+
+        @NotNull
+        private final TreeMap<String, Entry> entries = new TreeMap<>();
+
+        /**
+         * Adds a level to the pack.
+         *
+         * @param name       Name of the level.
+         * @param prop       Properties of the level.
+         * @param difficulty Difficulty of the level, e.g. the number of moves of its best solution, or
+         *                   {@link LevelPack#UNKNOWN_DIFFICULTY} if it is not known.
+         * @return This builder.
+         * @throws IllegalArgumentException if the name is blank, too long or already added, or if the level cannot be
+         *                                  represented in the {@link BinaryMapFormat}.
+         */
+        @NotNull
+        public Builder add(@NotNull final String name, @NotNull final PackedGameProperties prop, final int difficulty) {
+            final var nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            if (name.isBlank() || nameBytes.length > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("Invalid level name '" + name + "'");
+            }
+            if (entries.containsKey(name)) {
+                throw new IllegalArgumentException("Level '" + name + "' is already in the pack");
+            }
+
+            final var data = new ByteArrayOutputStream();
+            try {
+                BinaryMapFormat.write(prop, data);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unexpected exception writing to memory", e);
+            }
+            entries.put(name, new Entry(nameBytes, prop.rows, prop.cols, difficulty, data.toByteArray()));
+            return this;
+        }
+
+        /**
+         * @return Number of levels added so far.
+         */
+        public int size() {
+            return entries.size();
+        }
+
+        /**
+         * Writes the pack to a file. The file is replaced atomically, in the same way as {@link Serializer}.
+         *
+         * @param path Path to write to.
+         * @throws IOException if an I/O exception has occurred.
+         */
+        public void write(@NotNull final Path path) throws IOException {
+            final var indexBytes = new ByteArrayOutputStream();
+            final var index = new DataOutputStream(indexBytes);
+            var offset = (long) HEADER_SIZE;
+            for (var entry : entries.values()) {
+                offset += MIN_ENTRY_SIZE + entry.name.length;
+            }
+            for (var entry : entries.values()) {
+                index.writeShort(entry.name.length);
+                index.write(entry.name);
+                index.writeInt(entry.rows);
+                index.writeInt(entry.cols);
+                index.writeInt(entry.difficulty);
+                index.writeLong(offset);
+                index.writeInt(entry.data.length);
+                offset += entry.data.length;
+            }
+            final var crc = new CRC32();
+            crc.update(indexBytes.toByteArray());
+
+            final var tmp = Serializer.writeTemporary(path, channel -> {
+                final var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                        64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(entries.size());
+                out.writeInt(indexBytes.size());
+                out.writeInt((int) crc.getValue());
+                indexBytes.writeTo(out);
+                for (var entry : entries.values()) {
+                    out.write(entry.data);
+                }
+                out.flush();
+            });
+            Serializer.moveReplacing(tmp, path);
+        }
+    }
+
+    /**
+     * Entry point of the level pack builder.
+     *
+     * <p>
+     * Usage: {@code --pack <map directory> <pack file> [threads]}. Every map in the directory is validated by
+     * {@link BatchValidator}, and all valid maps are added to the pack as parsed by the validation, using the number of
+     * moves of the best solution as the difficulty. Exits with status {@code 1} if any map is left out.
+     * </p>
+     *
+     * @param args Arguments, excluding {@code --pack}.
+     */
+    public static void main(@NotNull String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: --pack <map directory> <pack file> [threads]");
+            System.exit(2);
+        }
+
+        final var mapDirectory = Paths.get(args[0]);
+        final var packPath = Paths.get(args[1]);
+
+        int skipped = 0;
+        try {
+            final var validator = args.length == 3
+                    ? new BatchValidator(mapDirectory, Integer.parseInt(args[2]))
+                    : new BatchValidator(mapDirectory);
+
+            final var builder = new Builder();
+            for (var result : validator.validateAll(true)) {
+                if (result.status != BatchValidator.Status.OK || result.properties == null) {
+                    System.err.println("Skipped " + result.fileName + ": " + result.message);
+                    ++skipped;
+                    continue;
+                }
+
+                try {
+                    builder.add(result.fileName, result.properties, result.moves);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipped " + result.fileName + ": " + e.getMessage());
+                    ++skipped;
+                }
+            }
+            builder.write(packPath);
+
+            System.err.println("Packed " + builder.size() + " maps into " + packPath + ", " + skipped + " skipped");
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Unable to create level pack: " + e.getMessage());
+            skipped = 1;
+        }
+
+        System.exit(skipped == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,170 @@
+package io;
+
+import models.map.CellGrid;
+import models.pipes.Pipe;
+import models.solver.Solver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A collection of checks for determining whether a {@link GameProperties} describes a playable level.
+ */
+public final class LevelValidator {
+
+    public static final String MSG_MISSING_SOURCE = "Source tile is missing!";
+    public static final String MSG_MISSING_SINK = "Sink tile is missing!";
+    public static final String MSG_MULTIPLE_SOURCES = "Map must only contain one source tile!";
+    public static final String MSG_MULTIPLE_SINKS = "Map must only contain one sink tile!";
+    public static final String MSG_BAD_DIMS = "Map size must be at least 2x2!";
+    public static final String MSG_BAD_DELAY = "Delay must be a positive value!";
+    public static final String MSG_SOURCE_TO_WALL = "Source tile is blocked by a wall!";
+    public static final String MSG_SINK_TO_WALL = "Sink tile is blocked by a wall!";
+    /**
+     * The sink cannot be reached even if any shape is available once the initial pipes are used up. A level without
+     * this error is not guaranteed to be solvable with the pipes which are actually generated.
+     */
+    public static final String MSG_UNSOLVABLE = "Sink cannot be reached using the given pipes!";
+
+    /**
+     * Maximum number of search nodes to expand when checking whether a level is solvable.
+     */
+    private static final long SOLVER_NODE_BUDGET = 200_000;
+
+    private LevelValidator() {
+        // You don't need to instantiate this class to use it!
+    }
+
+    /**
+     * Checks whether a level and its properties are valid.
+     *
+     * <p>
+     * The following conditions are checked, in order:
+     * <ul>
+     * <li>Sink cell is present, and is the only sink cell</li>
+     * <li>Source cell is present, and is the only source cell</li>
+     * <li>Minimum map size is 2x2</li>
+     * <li>Flow delay is at least 1</li>
+     * <li>Source/Sink tiles are not blocked by walls</li>
+     * </ul>
+     * </p>
+     *
+     * @param prop Properties of the level.
+     * @return {@link Optional} containing the error message, or an empty {@link Optional} if the level is valid.
+     * @throws IllegalArgumentException if any cell of the level is {@code null}.
+     */
+    @NotNull
+    public static Optional<String> checkValidity(@NotNull final GameProperties prop) {
+        return checkValidity(CellGrid.fromCells(prop.rows, prop.cols, prop.cells), prop.delay);
+    }
+
+    /**
+     * Checks whether a level is valid.
+     *
+     * @param grid  Cells of the level.
+     * @param delay Delay before the water starts flowing.
+     * @return {@link Optional} containing the error message, or an empty {@link Optional} if the level is valid.
+     * @see LevelValidator#checkValidity(GameProperties)
+     */
+    @NotNull
+    public static Optional<String> checkValidity(@NotNull final CellGrid grid, final int delay) {
+        var sourceIndex = -1;
+        var sinkIndex = -1;
+        var sourceCount = 0;
+        var sinkCount = 0;
+        for (int i = 0; i < grid.size(); ++i) {
+            final var kind = grid.kindAt(i);
+            if (kind == CellGrid.SOURCE) {
+                sourceIndex = i;
+                ++sourceCount;
+            } else if (kind == CellGrid.SINK) {
+                sinkIndex = i;
+                ++sinkCount;
+            }
+        }
+
+        if (sinkCount == 0) {
+            return Optional.of(MSG_MISSING_SINK);
+        } else if (sinkCount > 1) {
+            return Optional.of(MSG_MULTIPLE_SINKS);
+        } else if (sourceCount == 0) {
+            return Optional.of(MSG_MISSING_SOURCE);
+        } else if (sourceCount > 1) {
+            return Optional.of(MSG_MULTIPLE_SOURCES);
+        } else if (grid.getRows() < 2 || grid.getCols() < 2) {
+            return Optional.of(MSG_BAD_DIMS);
+        } else if (delay <= 0) {
+            return Optional.of(MSG_BAD_DELAY);
+        }
+
+        final var sourceNext = grid.neighborOf(sourceIndex, CellGrid.directionOf(grid.get(sourceIndex)));
+        if (sourceNext == -1 || grid.kindAt(sourceNext) == CellGrid.WALL) {
+            return Optional.of(MSG_SOURCE_TO_WALL);
+        }
+        final var sinkNext = grid.neighborOf(sinkIndex, CellGrid.directionOf(grid.get(sinkIndex)).getOpposite());
+        if (sinkNext == -1 || grid.kindAt(sinkNext) == CellGrid.WALL) {
+            return Optional.of(MSG_SINK_TO_WALL);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Checks whether the sink of a valid level can be reached using its initial pipes.
+     *
+     * <p>
+     * Once the initial pipes are used up, the queue is filled with random pipes, so any shape is assumed to be
+     * available from then on. The level is only reported as unsolvable if the {@link Solver} proves that no solution
+     * exists within its node budget.
+     * </p>
+     *
+     * @param prop Properties of the level. The level must pass {@link LevelValidator#checkValidity(GameProperties)}.
+     * @return {@link Optional} containing the error message, or an empty {@link Optional} if the level may be solvable.
+     */
+    @NotNull
+    public static Optional<String> checkSolvable(@NotNull final GameProperties prop) {
+        final var solver = createSolver(prop);
+        if (solver.solve() == null && solver.isExhaustive()) {
+            return Optional.of(MSG_UNSOLVABLE);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Creates a solver for a valid level.
+     *
+     * <p>
+     * The solver follows the rules of the text-based game, and assumes any shape is available after the initial pipes
+     * are used up.
+     * </p>
+     *
+     * @param prop Properties of the level. The level must pass {@link LevelValidator#checkValidity(GameProperties)}.
+     * @return A solver for the level.
+     */
+    @NotNull
+    public static Solver createSolver(@NotNull final GameProperties prop) {
+        return createSolver(CellGrid.fromCells(prop.rows, prop.cols, prop.cells), prop.pipes, prop.delay);
+    }
+
+    /**
+     * Creates a solver for a valid level.
+     *
+     * @param prop Properties of the level. The level must pass {@link LevelValidator#checkValidity(CellGrid, int)}.
+     * @return A solver for the level.
+     * @see LevelValidator#createSolver(GameProperties)
+     */
+    @NotNull
+    public static Solver createSolver(@NotNull final PackedGameProperties prop) {
+        return createSolver(prop.grid, prop.pipes, prop.delay);
+    }
+
+    @NotNull
+    private static Solver createSolver(@NotNull final CellGrid grid, @Nullable final List<Pipe> pipes,
+                                       final int delay) {
+        return new Solver(grid, pipes != null ? pipes : List.of(), delay, Solver.FlowModel.PLACEMENTS, true,
+                SOLVER_NODE_BUDGET);
+    }
+}
@@ -0,0 +1,50 @@
+package io;
+
+import models.map.CellGrid;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Data class for the core properties of a game, with the cells stored in their packed representation.
+ *
+ * <p>
+ * Unlike {@link GameProperties}, no {@link models.map.cells.Cell} object is created, so the memory used by a large map
+ * is dominated by its {@link CellGrid}.
+ * </p>
+ */
+public class PackedGameProperties {
+    public int rows;
+    public int cols;
+    public int delay;
+    @NotNull
+    public CellGrid grid;
+    @Nullable
+    public List<Pipe> pipes;
+    /**
+     * Relative weight of each shape for randomly-generated pipes, indexed by the ordinal of {@link Pipe.Shape}, or
+     * {@code null} if every shape is equally likely.
+     */
+    @Nullable
+    public int[] pipeWeights;
+
+    public PackedGameProperties(@NotNull CellGrid grid, int delay, @Nullable List<Pipe> pipes,
+                                @Nullable int[] pipeWeights) {
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.grid = grid;
+        this.delay = delay;
+        this.pipes = pipes;
+        this.pipeWeights = pipeWeights;
+    }
+
+    /**
+     * @return Properties of the same game, with the cells unpacked into a 2D cell array.
+     */
+    @NotNull
+    public GameProperties toGameProperties() {
+        return new GameProperties(rows, cols, grid.toCells(), delay, pipes, pipeWeights);
+    }
+}
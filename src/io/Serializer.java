@@ -1,23 +1,46 @@
 package io;
 
-import javafx.beans.property.StringProperty;
+import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A serializer for converting {@link GameProperties} into a map file.
+ *
+ * <p>
+ * Each map is first written to a temporary file in the same directory as the target, which is then renamed over the
+ * target. The target therefore either keeps its previous content or contains the complete new map, even if writing
+ * fails part-way.
+ * </p>
  */
 public class Serializer {
 
+    /**
+     * Size of the buffer between the writer and the file channel.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     /**
      * Path to the map to serialize to.
      */
     @NotNull
-    private Path path;
+    private final Path path;
 
     public Serializer(@NotNull final Path path) {
         this.path = path;
@@ -27,37 +50,214 @@ public class Serializer {
      * Serializes a {@link GameProperties} object and saves it into a file.
      *
      * @param prop {@link GameProperties} object to serialize and save.
-     * @throws IOException if an I/O exception has occurred.
+     * @throws IOException              if an I/O exception has occurred.
+     * @throws IllegalArgumentException if the size of {@code prop.cells} does not match its rows and columns.
      */
     public void serializeGameProp(@NotNull final GameProperties prop) throws IOException {
-        // TODO
-        PrintWriter b = new PrintWriter(path.toString());
+        serializeAll(Map.of(path, prop));
+    }
 
-        b.print("# rows");
-        b.println();
-        b.print(prop.rows);
-        b.println();
+    /**
+     * Serializes multiple {@link GameProperties} objects and saves each of them into its own file.
+     *
+     * <p>
+     * All maps are written to temporary files before any target is replaced. If any map fails to be written, no target
+     * is replaced and all temporary files are removed.
+     * </p>
+     *
+     * @param levels Map of target path to the {@link GameProperties} object to save into it.
+     * @throws IOException              if an I/O exception has occurred.
+     * @throws IllegalArgumentException if the size of the cells of any level does not match its rows and columns.
+     */
+    public static void serializeAll(@NotNull final Map<Path, GameProperties> levels) throws IOException {
+        for (var prop : levels.values()) {
+            checkSize(prop);
+        }
 
-        b.print("# cols");
-        b.println();
-        b.print(prop.cols);
-        b.println();
+        final var written = new ArrayList<Path>(levels.size());
+        try {
+            for (var entry : levels.entrySet()) {
+                written.add(writeTemporary(entry.getKey(), entry.getValue()));
+            }
 
-        b.print("# delay before first flow");
-        b.println();
-        b.print(prop.delay);
-        b.println();
+            var i = 0;
+            for (var target : levels.keySet()) {
+                moveReplacing(written.get(i), target);
+                written.set(i++, null);
+            }
+        } finally {
+            for (var tmp : written) {
+                if (tmp != null) {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        }
+    }
 
-        b.print("# map");
-        b.println();
-        for(int i = 0; i < prop.cells.length; i++){
-            for(int j = 0; j < prop.cells[0].length; j++){
-                b.print(prop.cells[i][j].toSerializedRep());
+    private static void checkSize(@NotNull final GameProperties prop) {
+        if (prop.cells.length != prop.rows) {
+            throw new IllegalArgumentException("Expected " + prop.rows + " rows of cells, got " + prop.cells.length);
+        }
+        for (var row : prop.cells) {
+            if (row.length != prop.cols) {
+                throw new IllegalArgumentException("Expected " + prop.cols + " columns of cells, got " + row.length);
             }
-            b.println();
         }
+    }
 
-        b.flush();
+    /**
+     * Writes the content of a file.
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+        /**
+         * @param channel Channel of the file to write to. The channel is closed by the caller.
+         * @throws IOException if an I/O exception has occurred.
+         */
+        void write(@NotNull FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Writes a map into a new temporary file next to {@code target}, and forces it to the storage device.
+     *
+     * @param target Path which the map will be saved to.
+     * @param prop   Properties of the map.
+     * @return Path to the temporary file.
+     * @throws IOException if an I/O exception has occurred.
+     */
+    @NotNull
+    private static Path writeTemporary(@NotNull final Path target, @NotNull final GameProperties prop)
+            throws IOException {
+        return writeTemporary(target, channel -> {
+            final var out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.US_ASCII.newEncoder(), -1),
+                    BUFFER_SIZE);
+            write(prop, out);
+            out.flush();
+        });
+    }
+
+    /**
+     * Writes a new temporary file next to {@code target}, and forces it to the storage device.
+     *
+     * @param target Path which the file will be saved to.
+     * @param writer Writer of the content of the file.
+     * @return Path to the temporary file. The file is deleted if writing fails.
+     * @throws IOException if an I/O exception has occurred.
+     */
+    @NotNull
+    static Path writeTemporary(@NotNull final Path target, @NotNull final ContentWriter writer) throws IOException {
+        final var dir = target.toAbsolutePath().getParent();
+        final var tmp = Files.createTempFile(dir, "." + target.getFileName(), ".tmp");
+        try {
+            copyPermissions(target, tmp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer.write(channel);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp;
+    }
 
+    /**
+     * Gives {@code tmp} the permissions of {@code target}, or the usual permissions of a new file if {@code target}
+     * does not exist. Temporary files are otherwise only accessible by their owner.
+     */
+    private static void copyPermissions(@NotNull final Path target, @NotNull final Path tmp) throws IOException {
+        if (Files.getFileAttributeView(tmp, PosixFileAttributeView.class) == null) {
+            return;
+        }
+
+        final var permissions = Files.exists(target)
+                ? Files.getPosixFilePermissions(target)
+                : PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(tmp, permissions);
+    }
+
+    /**
+     * Renames {@code source} to {@code target}, atomically if supported by the file system.
+     */
+    static void moveReplacing(@NotNull final Path source, @NotNull final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes a map in the text format, including the default pipes and pipe weights if present.
+     *
+     * @param prop Properties of the map.
+     * @param out  Writer to write to. The writer is neither flushed nor closed.
+     * @throws IOException if an I/O exception has occurred.
+     */
+    static void write(@NotNull final GameProperties prop, @NotNull final Writer out) throws IOException {
+        out.write("# rows\n");
+        out.write(prop.rows + "\n");
+
+        out.write("# cols\n");
+        out.write(prop.cols + "\n");
+
+        out.write("# delay before first flow\n");
+        out.write(prop.delay + "\n");
+
+        out.write("# map\n");
+        for (var row : prop.cells) {
+            for (var cell : row) {
+                out.write(cell.toSerializedRep());
+            }
+            out.write('\n');
+        }
+
+        if (prop.pipes != null && !prop.pipes.isEmpty()) {
+            out.write("# default pipes\n");
+            out.write(joinPipes(prop.pipes));
+            out.write('\n');
+        }
+
+        final var weights = prop.pipeWeights != null ? joinWeights(prop.pipeWeights) : "";
+        if (!weights.isEmpty()) {
+            out.write("# pipe weights\n");
+            out.write(weights);
+            out.write('\n');
+        }
+    }
+
+    @NotNull
+    private static String joinPipes(@NotNull final List<Pipe> pipes) {
+        final var sb = new StringBuilder();
+        for (var pipe : pipes) {
+            if (sb.length() != 0) {
+                sb.append(", ");
+            }
+            sb.append(pipe.toSerializedRep());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param weights Relative weight of each shape, indexed by the ordinal of {@link Pipe.Shape}.
+     * @return Weights as comma-separated {@code <shape>=<weight>} pairs. Shapes with a weight of zero are omitted.
+     */
+    @NotNull
+    private static String joinWeights(@NotNull final int[] weights) {
+        final var shapes = Pipe.Shape.values();
+        final var sb = new StringBuilder();
+        for (int i = 0; i < weights.length; ++i) {
+            if (weights[i] == 0) {
+                continue;
+            }
+            if (sb.length() != 0) {
+                sb.append(',');
+            }
+            sb.append(shapes[i].toSerializedRep()).append('=').append(weights[i]);
+        }
+        return sb.toString();
     }
 }
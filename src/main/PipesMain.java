@@ -1,7 +1,11 @@
 package main;
 
+import controllers.AudioManager;
 import controllers.SceneManager;
+import io.BatchValidator;
+import io.LevelPack;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 import textgame.Main;
 import views.panes.MainMenuPane;
@@ -11,10 +15,24 @@ import java.util.Arrays;
 
 public class PipesMain extends Application {
 
+    /**
+     * Time when the application is launched, as given by {@link System#nanoTime()}.
+     */
+    private static long launchNanos;
+
     @Override
     public void start(final Stage primaryStage) {
+        SceneManager.logTiming("Toolkit started", launchNanos);
+
         SceneManager.getInstance().setStage(primaryStage);
         SceneManager.getInstance().showPane(MainMenuPane.class);
+        SceneManager.logTiming("Main menu shown", launchNanos);
+
+        // Load everything else after the main menu is visible.
+        Platform.runLater(() -> {
+            AudioManager.getInstance().preload();
+            SceneManager.getInstance().prewarm();
+        });
     }
 
     public static void main(String[] args) {
@@ -26,7 +44,12 @@ public class PipesMain extends Application {
             Main.main(txtArgs.toArray(txtArrayArgs));
 
             System.exit(0);
+        } else if (args.length > 0 && args[0].equals("--validate")) {
+            BatchValidator.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && args[0].equals("--pack")) {
+            LevelPack.main(Arrays.copyOfRange(args, 1, args.length));
         } else {
+            launchNanos = System.nanoTime();
             PipesMain.launch(args);
 
         }
@@ -0,0 +1,18 @@
+package models;
+
+/**
+ * Source of time for the {@link GameLoop} and its {@link FlowTimer}.
+ */
+@FunctionalInterface
+public interface Clock {
+
+    /**
+     * Clock backed by {@link System#nanoTime()}.
+     */
+    Clock SYSTEM = System::nanoTime;
+
+    /**
+     * @return Current time in nanoseconds. Only the difference between two values is meaningful.
+     */
+    long nanoTime();
+}
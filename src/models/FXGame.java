@@ -1,21 +1,28 @@
 package models;
 
+import controllers.RenderScheduler;
+import controllers.Renderer;
+import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.scene.canvas.Canvas;
 import models.map.Map;
+import models.map.MapGenerator;
 import models.map.cells.Cell;
-import models.map.cells.FillableCell;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import textgame.game.Game;
-import util.Coordinate;
 
 import java.util.List;
 
 /**
  * JavaFX version of {@link textgame.game.Game}.
+ *
+ * <p>
+ * The rules of the game are implemented by {@link GameEngine}, which does not depend on JavaFX. This class adapts the
+ * engine for the user interface, by exposing its counters as properties and rendering it onto canvases.
+ * </p>
  */
 public class FXGame {
 
@@ -27,19 +34,30 @@ public class FXGame {
      * Default number of columns.
      */
     private static int defaultCols = 8;
-
-    @NotNull
-    private final Map map;
+    /**
+     * Generator of random maps, shared by all games so that its buffers are reused.
+     */
     @NotNull
-    private final PipeQueue pipeQueue;
+    private static final MapGenerator MAP_GENERATOR = new MapGenerator();
+    /**
+     * Game loop shared by all games, which runs frames on the JavaFX Application Thread.
+     */
     @NotNull
-    private FlowTimer flowTimer;
+    private static final GameLoop FX_LOOP = new GameLoop(Platform::runLater, GameLoop.DEFAULT_FRAME_PERIOD_MS);
+
     @NotNull
-    private final CellStack cellStack = new CellStack();
+    private final GameEngine engine;
 
-    private IntegerProperty numOfSteps = new SimpleIntegerProperty(0);
+    @NotNull
+    private final IntegerProperty numOfSteps = new SimpleIntegerProperty(0);
+    @NotNull
+    private final IntegerProperty numOfUndo = new SimpleIntegerProperty(0);
 
-    private int pauseDistance;
+    /**
+     * Canvas which the map is last rendered onto.
+     */
+    @Nullable
+    private Canvas mapCanvas;
 
     /**
      * Sets the default number of rows for generated maps.
@@ -88,10 +106,8 @@ public class FXGame {
      * @param cols Number of columns (excluding side walls)
      */
     private FXGame(int rows, int cols) {
-        // TODO
-        map = new Map(rows + 2, cols +2);
-        pipeQueue = new PipeQueue();
-        flowTimer = new FlowTimer();
+        this(new GameEngine(new Map(MAP_GENERATOR.generate(rows + 2, cols + 2)), new PipeQueue(),
+                FlowTimer.getDefaultDelay(), FX_LOOP));
     }
 
     /**
@@ -104,10 +120,72 @@ public class FXGame {
      * @param pipes Initial pipes, if provided.
      */
     public FXGame(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes) {
-        // TODO
-        map = new Map(rows, cols, cells);
-        pipeQueue = new PipeQueue(pipes);
-        flowTimer = new FlowTimer(delay);
+        this(rows, cols, delay, cells, pipes, new PipeGenerator());
+    }
+
+    /**
+     * Constructs an instance with all given parameters and a given source of random pipes.
+     *
+     * @param rows      Number of rows including side walls
+     * @param cols      Number of columns including side walls
+     * @param delay     Delay in seconds before water starts flowing.
+     * @param cells     Initial map.
+     * @param pipes     Initial pipes, if provided.
+     * @param generator Generator of pipes once {@code pipes} are used up.
+     */
+    public FXGame(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes,
+                  @NotNull PipeGenerator generator) {
+        this(rows, cols, delay, cells, pipes, generator, FX_LOOP);
+    }
+
+    /**
+     * Constructs an instance with all given parameters, whose flow of water is driven by the given game loop.
+     *
+     * <p>
+     * With a {@link GameLoop#manual(Clock)} loop and a {@link VirtualClock}, the game can be simulated headlessly
+     * without waiting in real time.
+     * </p>
+     *
+     * @param rows      Number of rows including side walls
+     * @param cols      Number of columns including side walls
+     * @param delay     Delay in seconds before water starts flowing.
+     * @param cells     Initial map.
+     * @param pipes     Initial pipes, if provided.
+     * @param generator Generator of pipes once {@code pipes} are used up.
+     * @param loop      Game loop to drive the flow of water.
+     */
+    public FXGame(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes,
+                  @NotNull PipeGenerator generator, @NotNull GameLoop loop) {
+        this(new GameEngine(new Map(rows, cols, cells), new PipeQueue(pipes, generator), delay, loop));
+    }
+
+    /**
+     * Constructs an instance which adapts the given engine.
+     *
+     * @param engine Engine of the game.
+     */
+    public FXGame(@NotNull GameEngine engine) {
+        this.engine = engine;
+
+        engine.addListener(new GameEngine.Listener() {
+            @Override
+            public void onStepsChanged(int steps) {
+                numOfSteps.set(steps);
+            }
+
+            @Override
+            public void onUndoCountChanged(int undoCount) {
+                numOfUndo.set(undoCount);
+            }
+        });
+    }
+
+    /**
+     * @return Engine of this game.
+     */
+    @NotNull
+    public GameEngine getEngine() {
+        return engine;
     }
 
     /**
@@ -116,7 +194,7 @@ public class FXGame {
      * @param handler {@link Runnable} to execute.
      */
     public void addOnFlowHandler(@NotNull Runnable handler) {
-        flowTimer.registerFlowCallback(handler);
+        engine.addOnFlowHandler(handler);
     }
 
     /**
@@ -125,31 +203,35 @@ public class FXGame {
      * @param handler {@link Runnable} to execute.
      */
     public void addOnTickHandler(@NotNull Runnable handler) {
-        flowTimer.registerTickCallback(handler);
+        engine.addOnTickHandler(handler);
     }
 
     /**
      * Starts the flow of water.
      */
     public void startCountdown() {
-        flowTimer.start();
+        engine.startCountdown();
     }
 
-    public void reset() {
-        flowTimer.restart(pauseDistance);
+    /**
+     * Resumes the flow of water from where it is paused.
+     */
+    public void resume() {
+        engine.resume();
     }
 
+    /**
+     * Pauses the flow of water.
+     */
     public void pause() {
-        pauseDistance = flowTimer.distance();
-        flowTimer.stop();
-        flowTimer = new FlowTimer();
+        engine.pause();
     }
 
     /**
      * Stops the flow of water.
      */
     public void stopCountdown() {
-        flowTimer.stop();
+        engine.stopCountdown();
     }
 
     /**
@@ -158,105 +240,81 @@ public class FXGame {
      * @see Game#placePipe(int, char)
      */
     public void placePipe(int row, int col) {
-        // TODO
-
-        Pipe p = pipeQueue.peek();
-        var coord = new Coordinate(row, col);
-        if (map.tryPlacePipe(coord, p)) {
-            pipeQueue.consume();
-            cellStack.push(new FillableCell(coord, p));
-            numOfSteps.set(numOfSteps.get() + 1);
-        }
+        engine.placePipe(row, col);
     }
 
     /**
      * @see Game#skipPipe()
      */
     public void skipPipe() {
-        // TODO
-
-        pipeQueue.consume();
-        numOfSteps.set(numOfSteps.get() + 1);
+        engine.skipPipe();
     }
 
     /**
      * @see Game#undoStep()
      */
     public void undoStep() {
-        // TODO
-
-        var undoCell = cellStack.pop();
-        if (undoCell != null) {
-            if (undoCell.getPipe().map(Pipe::getFilled).orElse(false)) {
-                cellStack.push(undoCell);
-            }
-            pipeQueue.undo(undoCell.getPipe().orElseThrow());
-            map.undo(undoCell.coord);
-
-            numOfSteps.set(numOfSteps.get() + 1);
-        }
+        engine.undoStep();
     }
 
     /**
      * Renders the map onto a {@link Canvas}.
      *
+     * <p>
+     * The map is rendered on the next JavaFX pulse, and repeated calls before then are coalesced by
+     * {@link RenderScheduler}. Only the tiles which have changed since the map is last rendered onto the same canvas
+     * are redrawn.
+     * </p>
+     *
      * @param canvas {@link Canvas} to render to.
      */
     public void renderMap(@NotNull Canvas canvas) {
-        map.render(canvas);
+        final var map = engine.getMap();
+        RenderScheduler.getInstance().request(canvas, () -> {
+            if (canvas != mapCanvas) {
+                mapCanvas = canvas;
+                map.markAllDirty();
+            }
+            Renderer.renderMapChanges(canvas, map);
+        });
     }
 
     /**
-     * Renders the queue onto a {@link Canvas}.
+     * Renders the queue onto a {@link Canvas} on the next JavaFX pulse.
      *
      * @param canvas {@link Canvas} to render to.
      */
     public void renderQueue(@NotNull Canvas canvas) {
-        pipeQueue.render(canvas);
+        final var pipes = engine.getPipeQueue().getPipes();
+        RenderScheduler.getInstance().request(canvas, () -> Renderer.renderQueue(canvas, pipes));
     }
 
     /**
      * @see Game#updateState()
      */
     public void updateState() {
-        // TODO
-
-        if (flowTimer.distance() == 0) {
-            map.fillBeginTile();
-            map.fillTiles(flowTimer.distance());
-        } else if (flowTimer.distance() > 0) {
-            map.fillTiles(flowTimer.distance());
-        }
-        if (hasWon()) {
-            fillAllPipes();
-        }
+        engine.updateState();
     }
 
     /**
      * @see Game#updateState()
      */
     public boolean hasWon() {
-        // TODO
-        return map.checkPath();
+        return engine.hasWon();
     }
 
     /**
      * @see Game#hasLost()
      */
     public boolean hasLost() {
-        // TODO
-        if (flowTimer.distance() <= 0) {
-            return false;
-        } else {
-            return map.hasLost();
-        }
+        return engine.hasLost();
     }
 
     /**
      * Fills all reachable pipes in the map.
      */
     public void fillAllPipes() {
-        map.fillAll();
+        engine.fillAllPipes();
     }
 
     public IntegerProperty getNumOfSteps() {
@@ -264,6 +322,6 @@ public class FXGame {
     }
 
     public IntegerProperty getNumOfUndo() {
-        return cellStack.getUndoCountProperty();
+        return numOfUndo;
     }
 }
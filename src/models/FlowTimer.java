@@ -1,17 +1,19 @@
 package models;
 
-import javafx.application.Platform;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Timer for handling flow events.
+ *
+ * <p>
+ * The timer does not own a thread. Instead, it is advanced by a shared {@link GameLoop}, and derives its tick and flow
+ * events from the time it has been running for, as measured by the {@link Clock} of the loop. Pausing the timer stops
+ * accumulating running time, so resuming it continues exactly where it left off.
+ * </p>
  */
 public class FlowTimer {
 
@@ -25,16 +27,26 @@ public class FlowTimer {
      */
     private static int defaultFlowDuration = 3;
 
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     /**
-     * Backing timer.
+     * Game loop which advances this timer.
      */
     @NotNull
-    private final Timer flowTimer = new Timer(true);
+    private final GameLoop loop;
+    /**
+     * Delay before the water starts flowing, in seconds.
+     */
+    private final int delay;
+    /**
+     * Duration between each water flow, in seconds.
+     */
+    private final int flowDuration;
 
     /**
      * Current value of the flow timer.
      */
-    private final IntegerProperty currentValue = new SimpleIntegerProperty();
+    private int currentValue;
 
     /**
      * List of callbacks to execute when a tick has passed.
@@ -46,6 +58,21 @@ public class FlowTimer {
     private final List<Runnable> onFlowCallbacks = new ArrayList<>();
 
     private int ticksElapsed;
+    /**
+     * Number of flow events which have been dispatched.
+     */
+    private int flowsElapsed;
+
+    private boolean running = false;
+    private boolean stopped = false;
+    /**
+     * Running time accumulated before the last time the timer is started or resumed, in nanoseconds.
+     */
+    private long elapsedNanos = 0;
+    /**
+     * Time when the timer is last started or resumed, as given by the {@link Clock} of {@link FlowTimer#loop}.
+     */
+    private long resumedAt;
 
     /**
      * Sets the default delay of all {@link FlowTimer}.
@@ -80,49 +107,20 @@ public class FlowTimer {
     }
 
     /**
-     * Creates an instance with default delay.
-     *
-     * <p>
-     * This constructor should also register a callback to increment current value on flow.
-     * </p>
-     */
-    FlowTimer() {
-        this(defaultDelay);
-    }
-
-    /**
-     * Creates an instance with custom delay.
-     *
-     * <p>
-     * This constructor should also register a callback to increment current value on flow.
-     * </p>
+     * Creates an instance with custom delay, which is advanced by the given game loop.
      *
      * @param initialValue Initial delay value.
+     * @param loop         Game loop to advance this timer.
      */
-    FlowTimer(int initialValue) {
-        // TODO
-        currentValue.set(-1);
+    FlowTimer(int initialValue, @NotNull GameLoop loop) {
+        this.loop = loop;
+        this.delay = initialValue;
+        this.flowDuration = defaultFlowDuration;
+
+        currentValue = -1;
         ticksElapsed = 0;
-        defaultDelay = initialValue;
-        registerFlowCallback(new TimerTask() {
-            @Override
-            public void run() {
-                Platform.runLater(()-> {
-                    currentValue.set(currentValue.get() + 1);
-                    System.out.println(currentValue.getValue());
-                });
-            }
-        });
-
-        registerTickCallback(new TimerTask() {
-             @Override
-             public void run() {
-                 Platform.runLater(() -> {
-                     ticksElapsed++;
-//                     System.out.println(ticksElapsed);
-                 });
-             }
-         });
+        flowsElapsed = 0;
+        registerFlowCallback(() -> ++currentValue);
     }
 
     /**
@@ -152,49 +150,90 @@ public class FlowTimer {
      * </p>
      */
     void start() {
-        // TODO
-        onTickCallbacks.forEach((t) -> {
-            System.out.println("tick");
-            flowTimer.scheduleAtFixedRate((TimerTask) t, 1000, 1000);
-        });
-
-        onFlowCallbacks.forEach((t) -> {
-            flowTimer.scheduleAtFixedRate((TimerTask) t, 1000 * defaultDelay, 1000 * defaultFlowDuration);
-        });
-
-//        flowTimer.scheduleAtFixedRate(new TimerTask() {
-//            @Override
-//            public void run() {
-//                    ticksElapsed++;
-//                    if (ticksElapsed % defaultFlowDuration == 0)
-//                        currentValue.set(currentValue.get() + 1);
-//            }
-//        }, 1000, 1000);
+        resume();
     }
 
-    void restart(int restartDistance) {
-        currentValue.set(restartDistance);
-        onTickCallbacks.forEach((t) -> {
-            flowTimer.scheduleAtFixedRate((TimerTask) t, 1000, 1000);
-        });
+    /**
+     * Pauses the timer. Callbacks are not run until the timer is resumed.
+     */
+    void pause() {
+        if (!running) {
+            return;
+        }
 
-        onFlowCallbacks.forEach((t) -> {
-            flowTimer.scheduleAtFixedRate((TimerTask) t, 0, 1000 * defaultFlowDuration);
-        });
+        elapsedNanos += loop.getClock().nanoTime() - resumedAt;
+        running = false;
+        loop.remove(this);
     }
 
     /**
-     * Stops the timer.
+     * Resumes the timer from where it is paused.
+     */
+    void resume() {
+        if (running || stopped) {
+            return;
+        }
+
+        resumedAt = loop.getClock().nanoTime();
+        running = true;
+        loop.add(this);
+    }
+
+    /**
+     * Stops the timer. A stopped timer cannot be resumed.
      */
     void stop() {
-        // TODO
-        flowTimer.cancel();
+        pause();
+        stopped = true;
+    }
+
+    /**
+     * Runs the callbacks of all tick and flow events which are due, in the order they occur.
+     *
+     * @param now Current time, as given by the {@link Clock} of {@link FlowTimer#loop}.
+     */
+    void advance(long now) {
+        if (!running) {
+            return;
+        }
+
+        final var elapsed = elapsedNanos + (now - resumedAt);
+        while (running) {
+            final var nextTick = (ticksElapsed + 1) * TICK_NANOS;
+            final var nextFlow = (delay + (long) flowsElapsed * flowDuration) * TICK_NANOS;
+            if (Math.min(nextTick, nextFlow) > elapsed) {
+                break;
+            }
+
+            if (nextFlow <= nextTick) {
+                ++flowsElapsed;
+                runAll(onFlowCallbacks);
+            } else {
+                ++ticksElapsed;
+                runAll(onTickCallbacks);
+            }
+        }
+    }
+
+    private static void runAll(@NotNull List<Runnable> callbacks) {
+        // Callbacks may register further callbacks, which only take effect from the next event.
+        final var count = callbacks.size();
+        for (int i = 0; i < count; ++i) {
+            callbacks.get(i).run();
+        }
     }
 
     /**
      * @return Current distance of the water flow. If this value is negative, no pipe should be filled yet.
      */
     int distance() {
-        return currentValue.get();
+        return currentValue;
+    }
+
+    /**
+     * @return Number of ticks elapsed since the timer is started.
+     */
+    int getTicksElapsed() {
+        return ticksElapsed;
     }
 }
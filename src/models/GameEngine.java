@@ -0,0 +1,300 @@
+package models;
+
+import models.map.Map;
+import models.map.cells.FillableCell;
+import org.jetbrains.annotations.NotNull;
+import textgame.game.Game;
+import util.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Core of a timed game, consisting of the map, the pipe queue, the undo stack and the flow of water.
+ *
+ * <p>
+ * The engine does not depend on JavaFX, and reports changes to its state through {@link Listener}. This allows games
+ * to be simulated headlessly, e.g. together with a {@link GameLoop#manual(Clock)} loop. {@link FXGame} adapts the
+ * engine for the JavaFX user interface.
+ * </p>
+ */
+public class GameEngine {
+
+    /**
+     * Receives notifications of changes to the state of a {@link GameEngine}.
+     *
+     * <p>
+     * Listeners are run on the thread which changes the state, i.e. the thread calling the engine for moves, and the
+     * dispatcher thread of the {@link GameLoop} for tick and flow events.
+     * </p>
+     */
+    public interface Listener {
+
+        /**
+         * Called when a tick elapses.
+         *
+         * @param ticksElapsed Number of ticks elapsed since the game started.
+         */
+        default void onTick(int ticksElapsed) {
+        }
+
+        /**
+         * Called when the water flows into an additional tile.
+         *
+         * @param distance Current distance of the water flow.
+         */
+        default void onFlow(int distance) {
+        }
+
+        /**
+         * Called when the player takes a step.
+         *
+         * @param numOfSteps Number of steps the player has taken.
+         */
+        default void onStepsChanged(int numOfSteps) {
+        }
+
+        /**
+         * Called when the player undoes a step.
+         *
+         * @param undoCount Number of times the player has undone a step.
+         */
+        default void onUndoCountChanged(int undoCount) {
+        }
+    }
+
+    @NotNull
+    private final Map map;
+    @NotNull
+    private final PipeQueue pipeQueue;
+    @NotNull
+    private final FlowTimer flowTimer;
+    @NotNull
+    private final CellStack cellStack = new CellStack();
+    @NotNull
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private int numOfSteps = 0;
+
+    /**
+     * @param map       Map of the game.
+     * @param pipeQueue Queue of pipes to place.
+     * @param delay     Delay in seconds before water starts flowing.
+     * @param loop      Game loop to drive the flow of water.
+     */
+    public GameEngine(@NotNull Map map, @NotNull PipeQueue pipeQueue, int delay, @NotNull GameLoop loop) {
+        this.map = map;
+        this.pipeQueue = pipeQueue;
+        this.flowTimer = new FlowTimer(delay, loop);
+
+        flowTimer.registerTickCallback(() -> {
+            for (var listener : listeners) {
+                listener.onTick(flowTimer.getTicksElapsed());
+            }
+        });
+        flowTimer.registerFlowCallback(() -> {
+            for (var listener : listeners) {
+                listener.onFlow(flowTimer.distance());
+            }
+        });
+    }
+
+    /**
+     * Adds a listener to be notified of changes to the state of this game.
+     *
+     * @param listener Listener to add.
+     */
+    public void addListener(@NotNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Adds a handler to be run when the water flows into an additional tile.
+     *
+     * @param handler {@link Runnable} to execute.
+     */
+    public void addOnFlowHandler(@NotNull Runnable handler) {
+        flowTimer.registerFlowCallback(handler);
+    }
+
+    /**
+     * Adds a handler to be run when a tick elapses.
+     *
+     * @param handler {@link Runnable} to execute.
+     */
+    public void addOnTickHandler(@NotNull Runnable handler) {
+        flowTimer.registerTickCallback(handler);
+    }
+
+    /**
+     * Starts the flow of water.
+     */
+    public void startCountdown() {
+        flowTimer.start();
+    }
+
+    /**
+     * Resumes the flow of water from where it is paused.
+     */
+    public void resume() {
+        flowTimer.resume();
+    }
+
+    /**
+     * Pauses the flow of water.
+     */
+    public void pause() {
+        flowTimer.pause();
+    }
+
+    /**
+     * Stops the flow of water.
+     */
+    public void stopCountdown() {
+        flowTimer.stop();
+    }
+
+    /**
+     * @param row Row index to place pipe
+     * @param col Column index to place pipe
+     * @return {@code true} if the pipe is placed.
+     * @see Game#placePipe(int, char)
+     */
+    public boolean placePipe(int row, int col) {
+        final var p = pipeQueue.peek();
+        final var coord = new Coordinate(row, col);
+        if (!map.tryPlacePipe(coord, p)) {
+            return false;
+        }
+
+        pipeQueue.consume();
+        cellStack.push(new FillableCell(coord, p));
+        incrementSteps();
+        return true;
+    }
+
+    /**
+     * @see Game#skipPipe()
+     */
+    public void skipPipe() {
+        pipeQueue.consume();
+        incrementSteps();
+    }
+
+    /**
+     * @return {@code false} if there are no steps to undo, otherwise {@code true}.
+     * @see Game#undoStep()
+     */
+    public boolean undoStep() {
+        final var undoCell = cellStack.pop();
+        if (undoCell == null) {
+            return false;
+        }
+        for (var listener : listeners) {
+            listener.onUndoCountChanged(cellStack.getUndoCount());
+        }
+
+        if (map.isFilled(undoCell.coord)) {
+            cellStack.push(undoCell);
+            return false;
+        }
+        pipeQueue.undo(undoCell.getPipe().orElseThrow());
+        map.undo(undoCell.coord);
+
+        incrementSteps();
+        return true;
+    }
+
+    private void incrementSteps() {
+        ++numOfSteps;
+        for (var listener : listeners) {
+            listener.onStepsChanged(numOfSteps);
+        }
+    }
+
+    /**
+     * Fills the map up to the current distance of the water flow. If the game is won, all reachable pipes are filled.
+     *
+     * @see Game#updateState()
+     */
+    public void updateState() {
+        if (flowTimer.distance() == 0) {
+            map.fillBeginTile();
+            map.fillTiles(flowTimer.distance());
+        } else if (flowTimer.distance() > 0) {
+            map.fillTiles(flowTimer.distance());
+        }
+        if (hasWon()) {
+            fillAllPipes();
+        }
+    }
+
+    /**
+     * @see Game#hasWon()
+     */
+    public boolean hasWon() {
+        return map.checkPath();
+    }
+
+    /**
+     * @see Game#hasLost()
+     */
+    public boolean hasLost() {
+        if (flowTimer.distance() <= 0) {
+            return false;
+        } else {
+            return map.hasLost();
+        }
+    }
+
+    /**
+     * Fills all reachable pipes in the map.
+     */
+    public void fillAllPipes() {
+        map.fillAll();
+    }
+
+    /**
+     * @return Map of this game. The map should only be modified through this engine.
+     */
+    @NotNull
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * @return Queue of pipes of this game. The queue should only be modified through this engine.
+     */
+    @NotNull
+    public PipeQueue getPipeQueue() {
+        return pipeQueue;
+    }
+
+    /**
+     * @return Number of steps the player has taken.
+     */
+    public int getNumOfSteps() {
+        return numOfSteps;
+    }
+
+    /**
+     * @return Number of times the player has undone a step.
+     */
+    public int getUndoCount() {
+        return cellStack.getUndoCount();
+    }
+
+    /**
+     * @return Number of ticks elapsed since the game started.
+     */
+    public int getTicksElapsed() {
+        return flowTimer.getTicksElapsed();
+    }
+
+    /**
+     * @return Current distance of the water flow. If this value is negative, no pipe should be filled yet.
+     */
+    public int getDistance() {
+        return flowTimer.distance();
+    }
+}
@@ -0,0 +1,214 @@
+package models;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single-threaded scheduler which drives the events of all running {@link FlowTimer}.
+ *
+ * <p>
+ * A single daemon thread wakes up once per frame while any timer is running, and posts one frame to the dispatcher,
+ * which advances every running timer and runs all of their due callbacks. The periodic wake-up is cancelled when the
+ * last timer is removed, and scheduled again when a timer is added, so an idle loop never wakes up. A frame is never
+ * posted while the previous one is still pending, so work is coalesced when the dispatcher falls behind.
+ * </p>
+ * <p>
+ * Timers are only added, removed and advanced on the dispatcher thread, so their state is never shared between
+ * threads.
+ * </p>
+ * <p>
+ * A manual loop created by {@link GameLoop#manual(Clock)} has no scheduler thread. Frames are only run when
+ * {@link GameLoop#runFrame()} is called, which together with a {@link VirtualClock} allows timed games to be simulated
+ * headlessly as fast as possible.
+ * </p>
+ */
+public final class GameLoop {
+
+    /**
+     * Default duration between each frame, in milliseconds.
+     */
+    public static final long DEFAULT_FRAME_PERIOD_MS = 50;
+
+    /**
+     * Executor which runs frames, e.g. the JavaFX Application Thread, or {@code null} if frames
+     * are run manually.
+     */
+    @Nullable
+    private final Executor dispatcher;
+    private final long framePeriodMs;
+    /**
+     * Source of time for all timers of this loop.
+     */
+    @NotNull
+    private final Clock clock;
+
+    /**
+     * Scheduler thread, created when the first timer is added.
+     */
+    private ScheduledExecutorService scheduler;
+    /**
+     * Periodic wake-up of {@link GameLoop#scheduler}, or {@code null} if no timer is running.
+     */
+    @Nullable
+    private ScheduledFuture<?> tick;
+
+    /**
+     * Running timers. Only accessed from the dispatcher thread.
+     */
+    @NotNull
+    private final List<FlowTimer> timers = new ArrayList<>();
+    /**
+     * Buffer holding the timers advanced in a frame, so that timers may be added or removed by their callbacks.
+     */
+    @NotNull
+    private FlowTimer[] frameTimers = new FlowTimer[4];
+    /**
+     * Number of running timers, read by the scheduler thread.
+     */
+    private volatile int timerCount = 0;
+    @NotNull
+    private final AtomicBoolean framePending = new AtomicBoolean(false);
+    @NotNull
+    private final Runnable frame = this::runFrame;
+
+    /**
+     * @param dispatcher    Executor to run frames on.
+     * @param framePeriodMs Duration between each frame, in milliseconds.
+     * @throws IllegalArgumentException if {@code framePeriodMs} is not positive.
+     */
+    public GameLoop(@NotNull Executor dispatcher, long framePeriodMs) {
+        this(dispatcher, framePeriodMs, Clock.SYSTEM);
+    }
+
+    /**
+     * @param dispatcher    Executor to run frames on, or {@code null} if frames are run manually.
+     * @param framePeriodMs Duration between each frame, in milliseconds.
+     * @param clock         Source of time for all timers of this loop.
+     * @throws IllegalArgumentException if {@code framePeriodMs} is not positive.
+     */
+    private GameLoop(@Nullable Executor dispatcher, long framePeriodMs, @NotNull Clock clock) {
+        if (framePeriodMs <= 0) {
+            throw new IllegalArgumentException("Frame period must be a positive value");
+        }
+
+        this.dispatcher = dispatcher;
+        this.framePeriodMs = framePeriodMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a loop without a scheduler thread, where frames are only run by {@link GameLoop#runFrame()}.
+     *
+     * @param clock Source of time for all timers of the loop, usually a {@link VirtualClock}.
+     * @return A manual game loop.
+     */
+    @NotNull
+    public static GameLoop manual(@NotNull Clock clock) {
+        return new GameLoop(null, DEFAULT_FRAME_PERIOD_MS, clock);
+    }
+
+    /**
+     * @return Source of time for all timers of this loop.
+     */
+    @NotNull
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Adds a timer to be advanced on every frame. Must be called from the dispatcher thread.
+     *
+     * @param timer Timer to add.
+     */
+    void add(@NotNull FlowTimer timer) {
+        if (timers.contains(timer)) {
+            return;
+        }
+
+        timers.add(timer);
+        timerCount = timers.size();
+        startTicking();
+    }
+
+    /**
+     * Removes a timer from the loop. Must be called from the dispatcher thread.
+     *
+     * @param timer Timer to remove.
+     */
+    void remove(@NotNull FlowTimer timer) {
+        if (timers.remove(timer)) {
+            timerCount = timers.size();
+            if (timers.isEmpty()) {
+                stopTicking();
+            }
+        }
+    }
+
+    private synchronized void startTicking() {
+        if (tick != null || dispatcher == null) {
+            return;
+        }
+
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final var thread = new Thread(r, "game-loop");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        tick = scheduler.scheduleAtFixedRate(this::onSchedulerTick, framePeriodMs, framePeriodMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopTicking() {
+        if (tick == null) {
+            return;
+        }
+
+        tick.cancel(false);
+        tick = null;
+    }
+
+    /**
+     * Runs on the scheduler thread once per frame period.
+     */
+    private void onSchedulerTick() {
+        if (dispatcher != null && timerCount > 0 && framePending.compareAndSet(false, true)) {
+            dispatcher.execute(frame);
+        }
+    }
+
+    /**
+     * Advances all running timers to the current time of the clock, running all of their due callbacks.
+     *
+     * <p>
+     * This is run on the dispatcher thread once per frame. For a manual loop, this must be called by the owner of the
+     * loop instead, from the thread which owns its games.
+     * </p>
+     */
+    public void runFrame() {
+        framePending.set(false);
+
+        final var count = timers.size();
+        if (frameTimers.length < count) {
+            frameTimers = new FlowTimer[Math.max(count, frameTimers.length * 2)];
+        }
+        timers.toArray(frameTimers);
+
+        final var now = clock.nanoTime();
+        for (int i = 0; i < count; ++i) {
+            frameTimers[i].advance(now);
+        }
+        Arrays.fill(frameTimers, 0, count, null);
+    }
+}
@@ -0,0 +1,157 @@
+package models;
+
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Source of random pipes for a {@link PipeQueue}.
+ *
+ * <p>
+ * Each generator owns its own {@link SplittableRandom}, so generators are never contended between games or threads.
+ * Two generators created with the same seed and weights generate the same sequence of pipes, which allows a game to
+ * be replayed exactly. Independent generators for parallel games can be derived with {@link PipeGenerator#split()}.
+ * </p>
+ */
+public final class PipeGenerator {
+
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+
+    @NotNull
+    private final SplittableRandom rng;
+    /**
+     * {@code cumulativeWeights[i]}: Sum of the weights of all shapes with ordinal up to {@code i}.
+     */
+    @NotNull
+    private final int[] cumulativeWeights;
+
+    /**
+     * Creates a generator with a random seed, where every shape is equally likely.
+     */
+    public PipeGenerator() {
+        this(new SplittableRandom(), toCumulativeWeights(null));
+    }
+
+    /**
+     * Creates a generator with a random seed.
+     *
+     * @param weights Relative weight of each shape, indexed by the ordinal of {@link Pipe.Shape}, or {@code null} if
+     *                every shape is equally likely.
+     * @throws IllegalArgumentException if the weights are invalid.
+     */
+    public PipeGenerator(@Nullable int[] weights) {
+        this(new SplittableRandom(), toCumulativeWeights(weights));
+    }
+
+    /**
+     * Creates a generator where every shape is equally likely.
+     *
+     * @param seed Seed of the generator.
+     */
+    public PipeGenerator(long seed) {
+        this(new SplittableRandom(seed), toCumulativeWeights(null));
+    }
+
+    /**
+     * @param seed    Seed of the generator.
+     * @param weights Relative weight of each shape, indexed by the ordinal of {@link Pipe.Shape}, or {@code null} if
+     *                every shape is equally likely.
+     * @throws IllegalArgumentException if the weights are invalid.
+     */
+    public PipeGenerator(long seed, @Nullable int[] weights) {
+        this(new SplittableRandom(seed), toCumulativeWeights(weights));
+    }
+
+    private PipeGenerator(@NotNull SplittableRandom rng, @NotNull int[] cumulativeWeights) {
+        this.rng = rng;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    /**
+     * @param weights Relative weight of each shape, or {@code null} if every shape is equally likely.
+     * @return Cumulative sums of the weights.
+     * @throws IllegalArgumentException if the number of weights does not match the number of shapes, if any weight is
+     *                                  negative, or if all weights are zero.
+     */
+    @NotNull
+    private static int[] toCumulativeWeights(@Nullable int[] weights) {
+        final var cumulative = new int[SHAPES.length];
+        if (weights == null) {
+            for (int i = 0; i < cumulative.length; ++i) {
+                cumulative[i] = i + 1;
+            }
+            return cumulative;
+        }
+
+        if (weights.length != SHAPES.length) {
+            throw new IllegalArgumentException("Expected " + SHAPES.length + " weights, got " + weights.length);
+        }
+
+        var sum = 0;
+        for (int i = 0; i < weights.length; ++i) {
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("Weight of " + SHAPES[i] + " must not be negative");
+            }
+
+            sum = Math.addExact(sum, weights[i]);
+            cumulative[i] = sum;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+
+        return cumulative;
+    }
+
+    /**
+     * Creates a new generator with the same weights, whose sequence of pipes is independent of this generator.
+     *
+     * <p>
+     * Splitting advances the state of this generator, so the split generators are also reproducible from the seed of
+     * this generator.
+     * </p>
+     *
+     * @return A new generator.
+     */
+    @NotNull
+    public PipeGenerator split() {
+        return new PipeGenerator(rng.split(), cumulativeWeights);
+    }
+
+    /**
+     * @return Relative weight of each shape, indexed by the ordinal of {@link Pipe.Shape}.
+     */
+    @NotNull
+    public int[] getWeights() {
+        final var weights = Arrays.copyOf(cumulativeWeights, cumulativeWeights.length);
+        for (int i = weights.length - 1; i > 0; --i) {
+            weights[i] -= weights[i - 1];
+        }
+        return weights;
+    }
+
+    /**
+     * @return Shape of the next random pipe.
+     */
+    @NotNull
+    public Pipe.Shape nextShape() {
+        final var roll = rng.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+
+        var i = 0;
+        while (roll >= cumulativeWeights[i]) {
+            ++i;
+        }
+        return SHAPES[i];
+    }
+
+    /**
+     * @return The next random pipe.
+     */
+    @NotNull
+    public Pipe next() {
+        return new Pipe(nextShape());
+    }
+}
@@ -1,14 +1,12 @@
 package models;
 
-import controllers.Renderer;
-import javafx.scene.canvas.Canvas;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
 
 /**
  * Class encapsulating the pipe queue.
@@ -22,6 +20,16 @@ public class PipeQueue {
 
     @NotNull
     private final LinkedList<Pipe> pipeQueue;
+    /**
+     * Read-only view of {@link PipeQueue#pipeQueue}.
+     */
+    @NotNull
+    private final List<Pipe> pipeQueueView;
+    /**
+     * Source of pipes once the given pipes are used up.
+     */
+    @NotNull
+    private final PipeGenerator generator;
 
     /**
      * Creates an empty pipe queue.
@@ -31,11 +39,7 @@ public class PipeQueue {
      * </p>
      */
     public PipeQueue() {
-        pipeQueue = new LinkedList<>();
-
-        while (pipeQueue.size() < MAX_GEN_LENGTH) {
-            pipeQueue.add(generateNewPipe());
-        }
+        this(null);
     }
 
     /**
@@ -48,7 +52,24 @@ public class PipeQueue {
      * @param pipes List of pipes to display before generated pipes.
      */
     public PipeQueue(@Nullable List<Pipe> pipes) {
+        this(pipes, new PipeGenerator());
+    }
+
+    /**
+     * Creates a pipe queue with pipes already filled in the queue, and a given source of random pipes.
+     *
+     * <p>
+     * Queues created with the same pipes and generators with the same seed produce the same sequence of pipes.
+     * </p>
+     *
+     * @param pipes     List of pipes to display before generated pipes.
+     * @param generator Generator of pipes once {@code pipes} are used up.
+     */
+    public PipeQueue(@Nullable List<Pipe> pipes, @NotNull PipeGenerator generator) {
+        this.generator = generator;
+
         pipeQueue = new LinkedList<>();
+        pipeQueueView = Collections.unmodifiableList(pipeQueue);
         if (pipes != null) {
             pipeQueue.addAll(pipes);
         }
@@ -109,36 +130,20 @@ public class PipeQueue {
     }
 
     /**
-     * Renders this queue to a canvas.
-     *
-     * @param canvas Canvas to render to.
+     * @return Read-only view of the pipes in this queue, in the order they are consumed.
      */
-    public void render(@NotNull Canvas canvas) {
-        // TODO
-//        LinkedList<Pipe> pl = new LinkedList<>();
-//        while(this.peek() != null){
-//            pl.add(this.peek());
-//            this.consume();
-//        }
-//        Platform.runLater(() -> Renderer.renderQueue(canvas, pl));
-        Renderer.renderQueue(canvas, pipeQueue);
+    @NotNull
+    public List<Pipe> getPipes() {
+        return pipeQueueView;
     }
 
     /**
      * Generates a new pipe.
      *
-     * <p>
-     * Hint: Use {@link Random#nextInt(int)} to generate random numbers.
-     * </p>
-     *
      * @return A new pipe.
      */
     @NotNull
-    private static Pipe generateNewPipe() {
-        var rand = new Random();
-        var availablePipes = Pipe.Shape.values();
-        int index = rand.nextInt(availablePipes.length);
-
-        return new Pipe(availablePipes[index]);
+    private Pipe generateNewPipe() {
+        return generator.next();
     }
 }
@@ -0,0 +1,48 @@
+package models;
+
+/**
+ * {@link Clock} whose time only advances when requested.
+ *
+ * <p>
+ * Together with a manual {@link GameLoop}, this allows timed games to be simulated without waiting in real time. Since
+ * {@link FlowTimer} derives its events from elapsed time only, the events happen in the same order as in real time,
+ * regardless of how far the clock is advanced at once.
+ * </p>
+ */
+public final class VirtualClock implements Clock {
+
+    private long now;
+
+    /**
+     * Creates a clock starting at time zero.
+     */
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * @param start Initial time in nanoseconds.
+     */
+    public VirtualClock(long start) {
+        this.now = start;
+    }
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    /**
+     * Advances the time.
+     *
+     * @param nanos Duration to advance by, in nanoseconds.
+     * @throws IllegalArgumentException if {@code nanos} is negative.
+     */
+    public void advance(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Cannot advance the clock backwards");
+        }
+
+        now += nanos;
+    }
+}
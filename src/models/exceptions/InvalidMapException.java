@@ -1,17 +1,56 @@
 package models.exceptions;
 
 import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Exception indicating that the map is invalid for any reason.
  */
 public class InvalidMapException extends RuntimeException {
 
+    /**
+     * Line of the map file where the error is found, or {@code -1} if unknown.
+     */
+    private final int line;
+    /**
+     * Column of the map file where the error is found, or {@code -1} if unknown.
+     */
+    private final int column;
+
     public InvalidMapException(@NonNls final String message) {
         super(message);
+        this.line = -1;
+        this.column = -1;
     }
 
     public InvalidMapException(Throwable cause) {
         super(cause);
+        this.line = -1;
+        this.column = -1;
+    }
+
+    /**
+     * @param message Description of the error.
+     * @param line    Line of the map file where the error is found, starting from 1.
+     * @param column  Column of the map file where the error is found, starting from 1.
+     */
+    public InvalidMapException(@NonNls @NotNull final String message, int line, int column) {
+        super("Line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * @return Line of the map file where the error is found starting from 1, or {@code -1} if unknown.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return Column of the map file where the error is found starting from 1, or {@code -1} if unknown.
+     */
+    public int getColumn() {
+        return column;
     }
 }
@@ -0,0 +1,391 @@
+package models.map;
+
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import models.map.cells.Wall;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+import util.Direction;
+
+/**
+ * Compact representation of the cells in a {@link Map}.
+ *
+ * <p>
+ * Every tile is packed into a single byte in a flat row-major array, as follows:
+ * <ul>
+ * <li>Bits 0-1: Kind of the cell ({@link CellGrid#WALL}, {@link CellGrid#FILLABLE}, {@link CellGrid#SOURCE} or
+ * {@link CellGrid#SINK}).</li>
+ * <li>Bits 2-4: For fillable cells, the ordinal of the {@link Pipe.Shape} plus one, or zero if the cell is empty. For
+ * termination cells, the ordinal of the {@link Direction} the cell is pointing to.</li>
+ * <li>Bit 5: Whether the pipe or termination cell is filled.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * {@link Cell} objects are only created on demand, when a cell is requested through {@link CellGrid#toCell(int)}.
+ * </p>
+ */
+public final class CellGrid {
+
+    public static final int WALL = 0;
+    public static final int FILLABLE = 1;
+    public static final int SOURCE = 2;
+    public static final int SINK = 3;
+
+    private static final int KIND_MASK = 0b11;
+    private static final int DATA_SHIFT = 2;
+    private static final int DATA_MASK = 0b111;
+    private static final int FILLED_BIT = 1 << 5;
+
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int rows;
+    private final int cols;
+    @NotNull
+    private final byte[] tiles;
+    /**
+     * Shared {@link Coordinate} instance of every tile, indexed by the tile index. Lazily created by
+     * {@link CellGrid#coordinateOf(int)}.
+     */
+    @Nullable
+    private Coordinate[] coordinates;
+
+    /**
+     * Creates a grid of size rows x cols, with all tiles set to {@link CellGrid#WALL}.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     */
+    public CellGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.tiles = new byte[rows * cols];
+    }
+
+    /**
+     * Creates a grid from a 2D cell array.
+     *
+     * @param rows  Number of rows.
+     * @param cols  Number of columns.
+     * @param cells Cells to pack into the grid.
+     * @return A grid containing the packed representation of {@code cells}.
+     * @throws IllegalArgumentException if any of the cells is {@code null}.
+     */
+    @NotNull
+    public static CellGrid fromCells(int rows, int cols, @NotNull Cell[][] cells) {
+        var grid = new CellGrid(rows, cols);
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < cols; ++c) {
+                grid.tiles[grid.indexOf(r, c)] = pack(cells[r][c]);
+            }
+        }
+
+        return grid;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return Number of tiles in the grid.
+     */
+    public int size() {
+        return tiles.length;
+    }
+
+    /**
+     * @param row Row of the tile.
+     * @param col Column of the tile.
+     * @return Index of the tile in the flat array.
+     */
+    public int indexOf(int row, int col) {
+        return row * cols + col;
+    }
+
+    /**
+     * @param index Index of the tile in the flat array.
+     * @return Row of the tile.
+     */
+    public int rowOf(int index) {
+        return index / cols;
+    }
+
+    /**
+     * @param index Index of the tile in the flat array.
+     * @return Column of the tile.
+     */
+    public int colOf(int index) {
+        return index % cols;
+    }
+
+    /**
+     * Retrieves the coordinate of a tile.
+     *
+     * <p>
+     * Coordinates are created once per tile and shared, so repeated lookups of the same tile do not allocate.
+     * </p>
+     *
+     * @param index Index of the tile in the flat array.
+     * @return Coordinate of the tile.
+     */
+    @NotNull
+    public Coordinate coordinateOf(int index) {
+        if (coordinates == null) {
+            coordinates = new Coordinate[tiles.length];
+        }
+
+        var coord = coordinates[index];
+        if (coord == null) {
+            coord = new Coordinate(rowOf(index), colOf(index));
+            coordinates[index] = coord;
+        }
+
+        return coord;
+    }
+
+    /**
+     * @param row Row of the tile.
+     * @param col Column of the tile.
+     * @return Whether the tile is within the bounds of the grid.
+     */
+    public boolean isInBounds(int row, int col) {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    /**
+     * @param index Index of a tile.
+     * @param d     Direction to move towards.
+     * @return Index of the adjacent tile in direction {@code d}, or {@code -1} if the adjacent tile is out of bounds.
+     */
+    public int neighborOf(int index, @NotNull Direction d) {
+        final var row = rowOf(index) + d.rowOffset;
+        final var col = colOf(index) + d.colOffset;
+
+        return isInBounds(row, col) ? indexOf(row, col) : -1;
+    }
+
+    /**
+     * @param index Index of the tile.
+     * @return The packed representation of the tile.
+     */
+    public byte get(int index) {
+        return tiles[index];
+    }
+
+    /**
+     * Sets the packed representation of a tile.
+     *
+     * @param index Index of the tile.
+     * @param tile  New packed representation of the tile.
+     */
+    public void set(int index, byte tile) {
+        tiles[index] = tile;
+    }
+
+    /**
+     * @param index Index of the tile.
+     * @return Kind of the tile.
+     */
+    public int kindAt(int index) {
+        return kindOf(tiles[index]);
+    }
+
+    /**
+     * @param index Index of the tile.
+     * @return Whether the tile is filled.
+     */
+    public boolean isFilledAt(int index) {
+        return isFilled(tiles[index]);
+    }
+
+    /**
+     * Marks a tile as filled.
+     *
+     * @param index Index of the tile.
+     */
+    public void setFilledAt(int index) {
+        tiles[index] |= FILLED_BIT;
+    }
+
+    /**
+     * Creates a {@link Cell} representing a tile.
+     *
+     * @param index Index of the tile.
+     * @return A newly-created cell equivalent to the tile.
+     */
+    @NotNull
+    public Cell toCell(int index) {
+        final var tile = tiles[index];
+        final var coord = coordinateOf(index);
+
+        switch (kindOf(tile)) {
+            case FILLABLE: {
+                final var shape = shapeOf(tile);
+                if (shape == null) {
+                    return new FillableCell(coord);
+                }
+
+                final var pipe = new Pipe(shape);
+                if (isFilled(tile)) {
+                    pipe.setFilled();
+                }
+                return new FillableCell(coord, pipe);
+            }
+            case SOURCE:
+            case SINK: {
+                final var type = kindOf(tile) == SOURCE ? TerminationCell.Type.SOURCE : TerminationCell.Type.SINK;
+                final var cell = new TerminationCell(coord, directionOf(tile), type);
+                if (isFilled(tile)) {
+                    cell.setFilled();
+                }
+                return cell;
+            }
+            default:
+                return new Wall(coord);
+        }
+    }
+
+    /**
+     * @return A newly-created 2D cell array equivalent to this grid.
+     */
+    @NotNull
+    public Cell[][] toCells() {
+        var cells = new Cell[rows][cols];
+        for (int i = 0; i < tiles.length; ++i) {
+            cells[rowOf(i)][colOf(i)] = toCell(i);
+        }
+
+        return cells;
+    }
+
+    /**
+     * @return Packed representation of a wall.
+     */
+    public static byte wall() {
+        return WALL;
+    }
+
+    /**
+     * @param shape Shape of the pipe in the cell, or {@code null} if the cell is empty.
+     * @return Packed representation of a fillable cell.
+     */
+    public static byte fillable(@Nullable Pipe.Shape shape) {
+        final int data = shape != null ? shape.ordinal() + 1 : 0;
+        return (byte) (FILLABLE | (data << DATA_SHIFT));
+    }
+
+    /**
+     * @param dir  Direction the termination cell is pointing to.
+     * @param type Type of the termination cell.
+     * @return Packed representation of a termination cell.
+     */
+    public static byte termination(@NotNull Direction dir, @NotNull TerminationCell.Type type) {
+        final int kind = type == TerminationCell.Type.SOURCE ? SOURCE : SINK;
+        return (byte) (kind | (dir.ordinal() << DATA_SHIFT));
+    }
+
+    /**
+     * @param tile Packed representation of a pipe or termination cell.
+     * @return Packed representation of the same tile, marked as filled.
+     */
+    public static byte filled(byte tile) {
+        return (byte) (tile | FILLED_BIT);
+    }
+
+    /**
+     * Packs a {@link Cell} into its compact representation.
+     *
+     * @param cell Cell to pack.
+     * @return Packed representation of the cell.
+     * @throws IllegalArgumentException if the cell is {@code null} or is of an unknown type.
+     */
+    public static byte pack(@Nullable Cell cell) {
+        if (cell instanceof Wall) {
+            return wall();
+        } else if (cell instanceof FillableCell) {
+            final var pipe = ((FillableCell) cell).getPipe();
+            final var tile = fillable(pipe.map(Pipe::getShape).orElse(null));
+            return pipe.map(Pipe::getFilled).orElse(false) ? filled(tile) : tile;
+        } else if (cell instanceof TerminationCell) {
+            final var tCell = (TerminationCell) cell;
+            final var tile = termination(tCell.pointingTo, tCell.type);
+            return tCell.isFilled() ? filled(tile) : tile;
+        }
+
+        throw new IllegalArgumentException("Cannot pack cell: " + cell);
+    }
+
+    /**
+     * Parses a packed tile from a character.
+     *
+     * @param c               Character to parse.
+     * @param terminationType If the character is a termination cell, its type.
+     * @return Packed representation of the tile, or {@code -1} if the character does not represent a valid cell.
+     * @see Cell#fromChar(char, Coordinate, TerminationCell.Type)
+     */
+    public static int fromChar(char c, @NotNull TerminationCell.Type terminationType) {
+        switch (c) {
+            case 'W':
+                return wall();
+            case '.':
+                return fillable(null);
+            case '^':
+                return termination(Direction.UP, terminationType);
+            case '>':
+                return termination(Direction.RIGHT, terminationType);
+            case '<':
+                return termination(Direction.LEFT, terminationType);
+            case 'v':
+                return termination(Direction.DOWN, terminationType);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @param tile Packed representation of a tile.
+     * @return Kind of the tile.
+     */
+    public static int kindOf(byte tile) {
+        return tile & KIND_MASK;
+    }
+
+    /**
+     * @param tile Packed representation of a tile.
+     * @return Whether the tile is filled.
+     */
+    public static boolean isFilled(byte tile) {
+        return (tile & FILLED_BIT) != 0;
+    }
+
+    /**
+     * @param tile Packed representation of a fillable tile.
+     * @return Shape of the pipe in the tile, or {@code null} if the tile does not contain a pipe.
+     */
+    @Nullable
+    public static Pipe.Shape shapeOf(byte tile) {
+        if (kindOf(tile) != FILLABLE) {
+            return null;
+        }
+
+        final int data = (tile >> DATA_SHIFT) & DATA_MASK;
+        return data != 0 ? SHAPES[data - 1] : null;
+    }
+
+    /**
+     * @param tile Packed representation of a termination tile.
+     * @return Direction which the termination tile is pointing to.
+     */
+    @NotNull
+    public static Direction directionOf(byte tile) {
+        return DIRECTIONS[(tile >> DATA_SHIFT) & DATA_MASK & 0b11];
+    }
+}
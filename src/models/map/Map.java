@@ -1,76 +1,110 @@
 package models.map;
 
-import controllers.Renderer;
 import io.Deserializer;
-import javafx.application.Platform;
-import javafx.scene.canvas.Canvas;
 import models.map.cells.Cell;
 import models.map.cells.FillableCell;
-import models.map.cells.TerminationCell;
-import models.map.cells.Wall;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import util.Coordinate;
 import util.Direction;
 import util.StringUtils;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
 
 /**
  * Map of the game.
+ *
+ * <p>
+ * The cells of the map are stored in a {@link CellGrid}, and {@link Cell} objects are only created when requested.
+ * </p>
+ * <p>
+ * The map keeps track of which tiles have changed since they were last drained by
+ * {@link Map#drainDirtyTiles(IntConsumer)}, so that only those tiles need to be redrawn.
+ * </p>
  */
 public class Map {
 
+    private static final Direction[] DIRECTIONS = Direction.values();
+    /**
+     * Generator of randomly-generated maps, shared so that its buffers are reused. Like the original generated maps,
+     * its maps have no walls or pipes inside the surrounding walls.
+     */
+    private static final MapGenerator GENERATOR = new MapGenerator(new SplittableRandom().nextLong(), 0, 0);
+
     private final int rows;
     private final int cols;
     @NotNull
-    private final Cell[][] cells;
+    private final CellGrid grid;
 
-    private TerminationCell sourceCell;
-    private TerminationCell sinkCell;
+    private int sourceIndex = -1;
+    private int sinkIndex = -1;
 
+    /**
+     * Whether any pipe has been filled.
+     */
+    private boolean hasFilledTiles = false;
+    /**
+     * Indices of tiles which are filled in the last fill step. Only these tiles can spread the water in the next step.
+     */
+    @NotNull
+    private int[] frontier;
+    private int frontierSize = 0;
+    /**
+     * Buffer for the frontier of the next fill step.
+     */
+    @NotNull
+    private int[] nextFrontier;
+    /**
+     * Indices of pipes placed since the last fill step. These may connect to a tile which is filled in an earlier step.
+     */
     @NotNull
-    private final Set<Coordinate> filledTiles = new HashSet<>();
+    private int[] placedSinceLastFill = new int[16];
+    private int placedSinceLastFillSize = 0;
     private int prevFilledTiles = 0;
     private Integer prevFilledDistance;
 
+    @NotNull
+    private final PathChecker pathChecker;
+
+    /**
+     * Whether every tile should be treated as changed, e.g. before the map is first drawn.
+     */
+    private boolean allDirty = true;
     /**
-     * Creates a map with size of rows x cols.
+     * {@code dirty[i]}: Whether tile {@code i} is in {@link Map#dirtyTiles}.
+     */
+    @NotNull
+    private final boolean[] dirty;
+    /**
+     * Indices of tiles which have changed since the last drain.
+     */
+    @NotNull
+    private final int[] dirtyTiles;
+    private int dirtyCount = 0;
+
+    /**
+     * Creates a randomly-generated map with size of rows x cols.
      *
      * <p>
-     * You should make sure that the map generated adheres to the specifications as stated in the README.
+     * The map is generated by {@link MapGenerator}, so the sink can always be reached from the source. All tiles inside
+     * the surrounding walls are left empty.
      * </p>
      *
      * @param rows Number of rows.
      * @param cols Number of columns.
+     * @throws IllegalArgumentException if the map is smaller than 4x4.
      */
     public Map(int rows, int cols) {
-        cells = new Cell[rows][cols];
-
-        for (int r = 0; r < rows; ++r) {
-            for (int c = 0; c < cols; ++c) {
-                var coord = new Coordinate(r, c);
+        this(generate(rows, cols));
+    }
 
-                if (r == 0 || c == 0) {
-                    cells[r][c] = new Wall(coord);
-                } else if (r == rows - 1 || c == cols - 1) {
-                    cells[r][c] = new Wall(coord);
-                } else {
-                    cells[r][c] = new FillableCell(coord);
-                }
-            }
+    @NotNull
+    private static CellGrid generate(int rows, int cols) {
+        synchronized (GENERATOR) {
+            return GENERATOR.generate(rows, cols);
         }
-
-        this.rows = rows;
-        this.cols = cols;
-
-        TerminationCell.CreateInfo startCellInfo = generateStartCellInfo();
-        sourceCell = new TerminationCell(startCellInfo.coord, startCellInfo.dir, TerminationCell.Type.SOURCE);
-        cells[startCellInfo.coord.row][startCellInfo.coord.col] = sourceCell;
-
-        TerminationCell.CreateInfo sinkCellInfo = generateEndCellInfo();
-        sinkCell = new TerminationCell(sinkCellInfo.coord, sinkCellInfo.dir, TerminationCell.Type.SINK);
-        cells[sinkCellInfo.coord.row][sinkCellInfo.coord.col] = sinkCell;
     }
 
     /**
@@ -85,37 +119,52 @@ public class Map {
      * @param cells Cells to fill the map.
      */
     public Map(int rows, int cols, @NotNull Cell[][] cells) {
-        this.cells = cells;
-
-        this.rows = rows;
-        this.cols = cols;
-
-        for (int r = 0; r < rows; ++r) {
-            for (int c = 0; c < cols; ++c) {
-                var cell = cells[r][c];
-
-                if (cell instanceof TerminationCell) {
-                    var tCell = (TerminationCell) cell;
-                    if (tCell.type == TerminationCell.Type.SOURCE) {
-                        if (sourceCell != null) {
-                            throw new IllegalArgumentException();
-                        } else {
-                            sourceCell = tCell;
-                        }
-                    } else if (tCell.type == TerminationCell.Type.SINK) {
-                        if (sinkCell != null) {
-                            throw new IllegalArgumentException();
-                        } else {
-                            sinkCell = tCell;
-                        }
-                    }
+        this(CellGrid.fromCells(rows, cols, cells));
+    }
+
+    /**
+     * Creates a map backed by the given grid.
+     *
+     * <p>
+     * The map takes ownership of {@code grid}, and the grid should not be modified by the caller afterwards.
+     * </p>
+     *
+     * @param grid Grid containing the cells of the map.
+     * @throws IllegalArgumentException If the map does not contain exactly one source and one sink.
+     */
+    public Map(@NotNull CellGrid grid) {
+        this.grid = grid;
+
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+
+        for (int i = 0; i < grid.size(); ++i) {
+            final var kind = grid.kindAt(i);
+
+            if (kind == CellGrid.SOURCE) {
+                if (sourceIndex != -1) {
+                    throw new IllegalArgumentException();
+                } else {
+                    sourceIndex = i;
+                }
+            } else if (kind == CellGrid.SINK) {
+                if (sinkIndex != -1) {
+                    throw new IllegalArgumentException();
+                } else {
+                    sinkIndex = i;
                 }
             }
         }
 
-        if (sourceCell == null || sinkCell == null) {
+        if (sourceIndex == -1 || sinkIndex == -1) {
             throw new IllegalArgumentException();
         }
+
+        this.frontier = new int[grid.size()];
+        this.nextFrontier = new int[grid.size()];
+        this.pathChecker = new PathChecker(grid, sourceIndex);
+        this.dirty = new boolean[grid.size()];
+        this.dirtyTiles = new int[grid.size()];
     }
 
     /**
@@ -132,9 +181,7 @@ public class Map {
      */
     @NotNull
     static Map fromString(int rows, int cols, @NotNull String cellsRep) {
-        var cells = Deserializer.parseString(rows, cols, cellsRep);
-
-        return new Map(rows, cols, cells);
+        return new Map(Deserializer.parseGrid(rows, cols, cellsRep));
     }
 
     /**
@@ -172,111 +219,43 @@ public class Map {
             return false;
         }
 
-        if (!(cells[row][col] instanceof FillableCell)) {
+        final var index = grid.indexOf(row, col);
+        if (grid.kindAt(index) != CellGrid.FILLABLE) {
             return false;
         }
-
-        var cell = (FillableCell) (cells[row][col]);
-        if (cell.getPipe().isPresent()) {
+        if (CellGrid.shapeOf(grid.get(index)) != null) {
             return false;
         }
 
-        cells[row][col] = new FillableCell(new Coordinate(row, col), p);
+        grid.set(index, CellGrid.fillable(p.getShape()));
+        markDirty(index);
+        pathChecker.onPipePlaced(index);
+        if (hasFilledTiles) {
+            if (placedSinceLastFillSize == placedSinceLastFill.length) {
+                placedSinceLastFill = Arrays.copyOf(placedSinceLastFill, placedSinceLastFillSize * 2);
+            }
+            placedSinceLastFill[placedSinceLastFillSize++] = index;
+        }
         return true;
     }
 
+    /**
+     * Creates a {@link Cell} representing the current state of a cell in the map.
+     *
+     * @param coord Coordinate of the cell.
+     * @return A newly-created cell equivalent to the cell at {@code coord}.
+     */
     @NotNull
-    private TerminationCell.CreateInfo generateStartCellInfo() {
-        Random rng = new Random();
-
-        Coordinate coord;
-        Direction direction;
-
-        do {
-            int row = rng.nextInt(rows);
-            int col = rng.nextInt(cols);
-            coord = new Coordinate(row, col);
-
-            int dir = rng.nextInt(4);
-            direction = Direction.values()[dir];
-
-            if (row == 0 || row == rows - 1) {
-                continue;
-            }
-            if (col == 0 || col == cols - 1) {
-                continue;
-            }
-            switch (direction) {
-                case UP:
-                    if (row <= 1) {
-                        continue;
-                    }
-                    break;
-                case DOWN:
-                    if (row >= rows - 2) {
-                        continue;
-                    }
-                    break;
-                case LEFT:
-                    if (col <= 1) {
-                        continue;
-                    }
-                    break;
-                case RIGHT:
-                    if (col >= cols - 2) {
-                        continue;
-                    }
-                    break;
-            }
-
-            break;
-        } while (true);
-
-        return new TerminationCell.CreateInfo(coord, direction);
+    public Cell getCell(@NotNull final Coordinate coord) {
+        return grid.toCell(grid.indexOf(coord.row, coord.col));
     }
 
-    @NotNull
-    private TerminationCell.CreateInfo generateEndCellInfo() {
-        Random rng = new Random();
-
-        Coordinate coord;
-        Direction direction;
-
-        do {
-            // false -> X-axis, true -> Y-axis
-            boolean axisToClamp = rng.nextInt(2) == 1;
-            int row = axisToClamp ? (rng.nextInt(2) == 1 ? rows - 1 : 0) : rng.nextInt(rows - 2) + 1;
-            int col = !axisToClamp ? (rng.nextInt(2) == 1 ? cols - 1 : 0) : rng.nextInt(cols - 2) + 1;
-
-            if (row == col) {
-                continue;
-            }
-
-            coord = new Coordinate(row, col);
-
-            if (axisToClamp) {
-                if (row == 0) {
-                    direction = Direction.UP;
-                } else {
-                    direction = Direction.DOWN;
-                }
-            } else {
-                if (col == 0) {
-                    direction = Direction.LEFT;
-                } else {
-                    direction = Direction.RIGHT;
-                }
-            }
-
-            var adjacentCell = coord.add(direction.getOpposite().getOffset());
-            if (adjacentCell.equals(sourceCell.coord)) {
-                continue;
-            }
-
-            break;
-        } while (true);
-
-        return new TerminationCell.CreateInfo(coord, direction);
+    /**
+     * @param coord Coordinate of the cell.
+     * @return Whether the pipe or termination cell at {@code coord} is filled.
+     */
+    public boolean isFilled(@NotNull final Coordinate coord) {
+        return grid.isFilledAt(grid.indexOf(coord.row, coord.col));
     }
 
     /**
@@ -303,7 +282,9 @@ public class Map {
                 System.out.print(StringUtils.createPadding(padLength, ' '));
             }
 
-            Arrays.stream(cells[i]).forEachOrdered(elem -> System.out.print(elem.toSingleChar()));
+            for (int j = 0; j < cols; ++j) {
+                System.out.print(grid.toCell(grid.indexOf(i, j)).toSingleChar());
+            }
 
             if (i != 0 && i != rows - 1) {
                 System.out.print(i);
@@ -316,12 +297,60 @@ public class Map {
     }
 
     /**
-     * Renders the map onto a {@link Canvas}.
+     * @return Grid containing the cells of the map. The grid must not be modified by the caller.
+     */
+    @NotNull
+    public CellGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Marks a tile as changed.
      *
-     * @param canvas Canvas to render to.
+     * @param index Index of the tile.
      */
-    public void render(@NotNull Canvas canvas) {
-        Platform.runLater(() -> Renderer.renderMap(canvas, cells));
+    private void markDirty(int index) {
+        if (allDirty || dirty[index]) {
+            return;
+        }
+
+        dirty[index] = true;
+        dirtyTiles[dirtyCount++] = index;
+    }
+
+    /**
+     * Marks every tile as changed, e.g. when the map is drawn onto a different canvas.
+     */
+    public void markAllDirty() {
+        allDirty = true;
+    }
+
+    /**
+     * Passes the index of every tile which has changed since the last drain to {@code action}, then marks all tiles as
+     * unchanged.
+     *
+     * <p>
+     * Every tile is passed on the first drain, and on the first drain after {@link Map#markAllDirty()}.
+     * </p>
+     *
+     * @param action Action to run for each changed tile.
+     */
+    public void drainDirtyTiles(@NotNull IntConsumer action) {
+        if (allDirty) {
+            for (int i = 0; i < grid.size(); ++i) {
+                action.accept(i);
+            }
+        } else {
+            for (int i = 0; i < dirtyCount; ++i) {
+                action.accept(dirtyTiles[i]);
+            }
+        }
+
+        for (int i = 0; i < dirtyCount; ++i) {
+            dirty[dirtyTiles[i]] = false;
+        }
+        dirtyCount = 0;
+        allDirty = false;
     }
 
     /**
@@ -335,28 +364,27 @@ public class Map {
      * @throws IllegalArgumentException if the cell is not an instance of {@link FillableCell}.
      */
     public void undo(@NotNull final Coordinate coord) {
-        if (!(cells[coord.row][coord.col] instanceof FillableCell)) {
+        final var index = grid.indexOf(coord.row, coord.col);
+        if (grid.kindAt(index) != CellGrid.FILLABLE) {
             throw new IllegalArgumentException("Cannot undo on non-FillableCell types!");
         }
-        cells[coord.row][coord.col] = new FillableCell(coord);
+        grid.set(index, CellGrid.fillable(null));
+        markDirty(index);
+        pathChecker.onPipeRemoved(index);
     }
 
     public void fillBeginTile() {
-        sourceCell.setFilled();
-    }
-
-    @NotNull
-    private List<Coordinate> getTraversedCoords() {
-        return new ArrayList<>(filledTiles);
+        grid.setFilledAt(sourceIndex);
+        markDirty(sourceIndex);
     }
 
     /**
      * Fills all pipes that are within {@code distance} units from the {@code sourceCell}.
      *
      * <p>
-     * Hint: There are two ways to approach this. You can either iteratively fill the tiles by distance (i.e. filling
-     * distance=0, distance=1, etc), or you can save the tiles you have already filled, and fill all adjacent cells of
-     * the already-filled tiles. Whichever method you choose is up to you, as long as the result is the same.
+     * The water is advanced one step at a time from the tiles filled in the previous step (the frontier), so each step
+     * only costs as much as the number of newly filled tiles. Pipes placed since the last step are also checked
+     * against the already-filled tiles, since they may connect to a tile which is no longer in the frontier.
      * </p>
      *
      * @param distance Distance to fill pipes.
@@ -371,68 +399,133 @@ public class Map {
             prevFilledTiles = 0;
 
             if (currentDistance == 0) {
-                filledTiles.add(sourceCell.coord);
                 prevFilledTiles = 1;
             } else if (currentDistance == 1) {
-                var coord = sourceCell.coord;
-                var newCoord = coord.add(sourceCell.pointingTo.getOffset());
+                placedSinceLastFillSize = 0;
 
-                if (!(cells[newCoord.row][newCoord.col] instanceof FillableCell)) {
+                final var sourceDir = CellGrid.directionOf(grid.get(sourceIndex));
+                final var newIndex = grid.neighborOf(sourceIndex, sourceDir);
+
+                if (newIndex == -1 || grid.kindAt(newIndex) != CellGrid.FILLABLE) {
                     return;
                 }
-                var cell = (FillableCell) cells[newCoord.row][newCoord.col];
-                if (cell.getPipe().isEmpty()) {
+                final var shape = CellGrid.shapeOf(grid.get(newIndex));
+                if (shape == null) {
                     return;
                 }
-                if (Arrays.stream(cell.getPipe().get().getConnections()).noneMatch(it -> sourceCell.pointingTo == it.getOpposite())) {
+                if (!shape.connects(sourceDir.getOpposite())) {
                     return;
                 }
 
-                cell.getPipe().get().setFilled();
-                filledTiles.add(newCoord);
+                grid.setFilledAt(newIndex);
+                markDirty(newIndex);
+                hasFilledTiles = true;
+                frontier[0] = newIndex;
+                frontierSize = 1;
                 prevFilledTiles = 1;
             } else {
-                final var traversedTiles = getTraversedCoords();
+                var newlyFilled = 0;
 
-                for (Coordinate c : traversedTiles) {
-                    if (!(cells[c.row][c.col] instanceof FillableCell)) {
+                var connectedPlacements = 0;
+                for (int i = 0; i < placedSinceLastFillSize; ++i) {
+                    final var index = placedSinceLastFill[i];
+                    if (!grid.isFilledAt(index) && isConnectedToFilledTile(index)) {
+                        placedSinceLastFill[connectedPlacements++] = index;
+                    }
+                }
+                placedSinceLastFillSize = 0;
+                for (int i = 0; i < connectedPlacements; ++i) {
+                    final var index = placedSinceLastFill[i];
+                    if (!grid.isFilledAt(index)) {
+                        grid.setFilledAt(index);
+                        markDirty(index);
+                        nextFrontier[newlyFilled++] = index;
+                    }
+                }
+
+                for (int i = 0; i < frontierSize; ++i) {
+                    final var index = frontier[i];
+                    if (grid.kindAt(index) != CellGrid.FILLABLE) {
                         continue;
                     }
 
-                    var tile = (FillableCell) cells[c.row][c.col];
-                    if (tile.getPipe().isEmpty()) {
+                    final var shape = CellGrid.shapeOf(grid.get(index));
+                    if (shape == null) {
                         throw new IllegalStateException();
                     }
 
-                    for (Direction d : tile.getPipe().get().getConnections()) {
-                        var newCoord = c.add(d.getOffset());
+                    for (Direction d : DIRECTIONS) {
+                        if (!shape.connects(d)) {
+                            continue;
+                        }
 
-                        if (!(cells[newCoord.row][newCoord.col] instanceof FillableCell)) {
+                        final var newIndex = grid.neighborOf(index, d);
+
+                        if (newIndex == -1 || grid.kindAt(newIndex) != CellGrid.FILLABLE) {
                             continue;
                         }
-                        if (traversedTiles.stream().anyMatch(it -> it.equals(newCoord))) {
+                        final var newShape = CellGrid.shapeOf(grid.get(newIndex));
+                        if (newShape == null) {
                             continue;
                         }
-                        var cell = (FillableCell) cells[newCoord.row][newCoord.col];
-                        if (cell.getPipe().isEmpty()) {
+                        if (!newShape.connects(d.getOpposite())) {
                             continue;
                         }
-                        if (Arrays.stream(cell.getPipe().get().getConnections()).noneMatch(it -> d == it.getOpposite())) {
+                        if (grid.isFilledAt(newIndex)) {
                             continue;
                         }
 
-                        cell.getPipe().get().setFilled();
-                        filledTiles.add(newCoord);
+                        grid.setFilledAt(newIndex);
+                        markDirty(newIndex);
+                        nextFrontier[newlyFilled++] = newIndex;
                     }
                 }
 
-                prevFilledTiles = filledTiles.size() - traversedTiles.size();
+                final var filled = nextFrontier;
+                nextFrontier = frontier;
+                frontier = filled;
+                frontierSize = newlyFilled;
+                prevFilledTiles = newlyFilled;
             }
 
             prevFilledDistance = currentDistance;
         }
     }
 
+    /**
+     * Checks whether the pipe at {@code index} connects to a pipe which has already been filled.
+     *
+     * @param index Index of the pipe to check.
+     * @return {@code true} if the pipe at {@code index} and a filled neighboring pipe are connected to each other.
+     */
+    private boolean isConnectedToFilledTile(int index) {
+        if (grid.kindAt(index) != CellGrid.FILLABLE) {
+            return false;
+        }
+        final var shape = CellGrid.shapeOf(grid.get(index));
+        if (shape == null) {
+            return false;
+        }
+
+        for (Direction d : DIRECTIONS) {
+            if (!shape.connects(d)) {
+                continue;
+            }
+
+            final var neighbor = grid.neighborOf(index, d);
+            if (neighbor == -1 || grid.kindAt(neighbor) != CellGrid.FILLABLE || !grid.isFilledAt(neighbor)) {
+                continue;
+            }
+
+            final var neighborShape = CellGrid.shapeOf(grid.get(neighbor));
+            if (neighborShape != null && neighborShape.connects(d.getOpposite())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Fills the source and sink tiles, as well as any tiles which can be reached from the source tile.
      */
@@ -440,54 +533,22 @@ public class Map {
         // TODO
         fillBeginTile();
         fillTiles(rows * cols);
-        sinkCell.setFilled();
+        grid.setFilledAt(sinkIndex);
+        markDirty(sinkIndex);
     }
 
     /**
      * Checks whether there exists a path from {@code sourceCell} to {@code sinkCell}.
      *
      * <p>
-     * Hint: This problem is similar to finding a specific node in a graph. As stated in the README, one of the ways you
-     * could approach this is to use Breadth-First Search.
+     * The set of tiles reachable from the source is kept up-to-date by {@link PathChecker} as pipes are placed and
+     * removed, so this is a constant-time query.
      * </p>
      *
      * @return {@code true} if a path exists, else {@code false}.
      */
     public boolean checkPath() {
-        // BFS woohoo!
-        var coordsTraversed = new ArrayList<Coordinate>();
-
-        Queue<Coordinate> coordsToCheck = new LinkedList<>();
-        coordsToCheck.add(sourceCell.coord);
-
-        while (!coordsToCheck.isEmpty()) {
-            var thisCoord = coordsToCheck.remove();
-            if (coordsTraversed.stream().anyMatch(it -> it.equals(thisCoord))) {
-                continue;
-            }
-
-            var thisCell = cells[thisCoord.row][thisCoord.col];
-            if (thisCell instanceof TerminationCell) {
-                var thisTermCell = (TerminationCell) thisCell;
-                if (thisTermCell.type == TerminationCell.Type.SINK) {
-                    return true;
-                } else {
-                    coordsToCheck.add(thisTermCell.coord.add(thisTermCell.pointingTo.getOffset()));
-                }
-            }
-
-            if (thisCell instanceof FillableCell) {
-                ((FillableCell) thisCell).getPipe().ifPresent(pipe -> {
-                    for (Direction dir : pipe.getConnections()) {
-                        coordsToCheck.add(thisCoord.add(dir.getOffset()));
-                    }
-                });
-            }
-
-            coordsTraversed.add(thisCoord);
-        }
-
-        return false;
+        return pathChecker.hasPath();
     }
 
     /**
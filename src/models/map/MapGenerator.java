@@ -0,0 +1,317 @@
+package models.map;
+
+import models.map.cells.TerminationCell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates random maps which are guaranteed to have a route from the source to the sink.
+ *
+ * <p>
+ * Maps are generated as follows:
+ * <ol>
+ * <li>The source is placed on a random tile inside the surrounding walls, pointing towards another tile inside the
+ * walls.</li>
+ * <li>A route is built by a randomized depth-first search from the tile next to the source, which ends at a tile next
+ * to the surrounding walls. The deepest such tile is preferred, so that routes wander across the map.</li>
+ * <li>The sink is placed in the surrounding wall next to the end of the route.</li>
+ * <li>Tiles which are not on the route are randomly turned into walls or decoy pipes.</li>
+ * </ol>
+ * Since the tiles of the route are always left empty, the sink can always be reached by placing pipes along the route.
+ * </p>
+ * <p>
+ * A generator with a given seed always generates the same sequence of maps. The search buffers are reused across maps
+ * of the same size, so the only allocation per map is the generated {@link CellGrid}.
+ * </p>
+ * <p>
+ * Neither the text map format nor {@link io.BinaryMapFormat} can store pre-placed pipes, so maps with decoy pipes can
+ * be played but not saved. Maps which are pre-generated to be saved or packed into a {@link io.LevelPack} should be
+ * generated by {@link MapGenerator#forExport(long)}, which places no decoys.
+ * </p>
+ */
+public final class MapGenerator {
+
+    /**
+     * Default probability of turning a tile which is not on the route into a wall.
+     */
+    public static final double DEFAULT_WALL_DENSITY = 0.15;
+    /**
+     * Default probability of placing a pipe on a tile which is not on the route. Maps with decoy pipes cannot be saved
+     * to a map file.
+     */
+    public static final double DEFAULT_DECOY_DENSITY = 0.05;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+    /**
+     * Number of orders which the four directions can be visited in.
+     */
+    private static final int ORDER_COUNT = 24;
+    /**
+     * {@code DIRECTION_ORDERS[o]}: The {@code o}-th permutation of the direction ordinals, packed as 2-bit fields.
+     */
+    private static final int[] DIRECTION_ORDERS = new int[ORDER_COUNT];
+
+    static {
+        var o = 0;
+        for (int a = 0; a < 4; ++a) {
+            for (int b = 0; b < 4; ++b) {
+                for (int c = 0; c < 4; ++c) {
+                    final var d = 6 - a - b - c;
+                    if (a == b || a == c || b == c || d < 0 || d > 3 || d == a || d == b || d == c) {
+                        continue;
+                    }
+                    DIRECTION_ORDERS[o++] = a | (b << 2) | (c << 4) | (d << 6);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private final SplittableRandom rng;
+    private final double wallDensity;
+    private final double decoyDensity;
+
+    /**
+     * Iteration in which each tile is visited by the search. Stamping avoids clearing the buffer between maps.
+     */
+    @NotNull
+    private int[] visitedStamp = new int[0];
+    private int stamp = 0;
+    /**
+     * Tile which each tile is visited from, or {@code -1} for the start of the route.
+     */
+    @NotNull
+    private int[] parent = new int[0];
+    /**
+     * Whether each tile is on the route of the last generated map.
+     */
+    @NotNull
+    private boolean[] onRoute = new boolean[0];
+    // Stack of the depth-first search.
+    @NotNull
+    private int[] stackTile = new int[0];
+    @NotNull
+    private int[] stackOrder = new int[0];
+    @NotNull
+    private int[] stackCursor = new int[0];
+
+    /**
+     * Creates a generator with a random seed and the default densities.
+     */
+    public MapGenerator() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates a generator with the default densities.
+     *
+     * @param seed Seed of the generator.
+     */
+    public MapGenerator(long seed) {
+        this(seed, DEFAULT_WALL_DENSITY, DEFAULT_DECOY_DENSITY);
+    }
+
+    /**
+     * Creates a generator whose maps can be saved to a map file, i.e. one which places no decoy pipes.
+     *
+     * @param seed Seed of the generator.
+     * @return A generator with the default wall density and no decoys.
+     */
+    @NotNull
+    public static MapGenerator forExport(long seed) {
+        return new MapGenerator(seed, DEFAULT_WALL_DENSITY, 0);
+    }
+
+    /**
+     * @param seed         Seed of the generator.
+     * @param wallDensity  Probability of turning a tile which is not on the route into a wall.
+     * @param decoyDensity Probability of placing a pipe on a tile which is not on the route.
+     * @throws IllegalArgumentException if the densities are not within [0, 1], or sum up to more than 1.
+     */
+    public MapGenerator(long seed, double wallDensity, double decoyDensity) {
+        if (wallDensity < 0 || decoyDensity < 0 || wallDensity + decoyDensity > 1) {
+            throw new IllegalArgumentException("Densities must be within [0, 1] and sum up to at most 1");
+        }
+
+        this.rng = new SplittableRandom(seed);
+        this.wallDensity = wallDensity;
+        this.decoyDensity = decoyDensity;
+    }
+
+    /**
+     * Generates a map.
+     *
+     * @param rows Number of rows, including the surrounding walls.
+     * @param cols Number of columns, including the surrounding walls.
+     * @return Cells of the generated map.
+     * @throws IllegalArgumentException if the map is smaller than 4x4.
+     */
+    @NotNull
+    public CellGrid generate(int rows, int cols) {
+        if (rows < 4 || cols < 4) {
+            throw new IllegalArgumentException("Map size must be at least 4x4, including the surrounding walls");
+        }
+
+        final var grid = new CellGrid(rows, cols);
+        ensureCapacity(grid.size());
+
+        for (int r = 1; r < rows - 1; ++r) {
+            for (int c = 1; c < cols - 1; ++c) {
+                grid.set(grid.indexOf(r, c), CellGrid.fillable(null));
+            }
+        }
+
+        final var source = grid.indexOf(1 + rng.nextInt(rows - 2), 1 + rng.nextInt(cols - 2));
+        final var sourceDir = pickDirection(grid, source, true);
+        grid.set(source, CellGrid.termination(sourceDir, TerminationCell.Type.SOURCE));
+
+        final var routeEnd = buildRoute(grid, source, grid.neighborOf(source, sourceDir));
+        final var sinkDir = pickDirection(grid, routeEnd, false);
+        grid.set(grid.neighborOf(routeEnd, sinkDir), CellGrid.termination(sinkDir, TerminationCell.Type.SINK));
+
+        for (int i = 0; i < grid.size(); ++i) {
+            if (grid.kindAt(i) != CellGrid.FILLABLE || onRoute[i]) {
+                continue;
+            }
+
+            final var roll = rng.nextDouble();
+            if (roll < wallDensity) {
+                grid.set(i, CellGrid.wall());
+            } else if (roll < wallDensity + decoyDensity) {
+                grid.set(i, CellGrid.fillable(SHAPES[rng.nextInt(SHAPES.length)]));
+            }
+        }
+
+        return grid;
+    }
+
+    /**
+     * Picks a random direction from a tile inside the surrounding walls.
+     *
+     * @param grid     Grid of the map.
+     * @param index    Index of the tile.
+     * @param interior If {@code true}, picks a direction towards another tile inside the walls. Otherwise, picks a
+     *                 direction towards the surrounding walls.
+     * @return The picked direction.
+     */
+    @NotNull
+    private Direction pickDirection(@NotNull CellGrid grid, int index, boolean interior) {
+        var candidates = 0;
+        var count = 0;
+        for (var d : DIRECTIONS) {
+            if (isInterior(grid, grid.neighborOf(index, d)) == interior) {
+                candidates |= d.getMask();
+                ++count;
+            }
+        }
+
+        var pick = rng.nextInt(count);
+        for (var d : DIRECTIONS) {
+            if ((candidates & d.getMask()) != 0 && pick-- == 0) {
+                return d;
+            }
+        }
+        throw new IllegalStateException("No direction to pick from");
+    }
+
+    /**
+     * Builds a route with a randomized depth-first search, and marks its tiles in {@link MapGenerator#onRoute}.
+     *
+     * @param grid   Grid of the map.
+     * @param source Index of the source tile.
+     * @param start  Index of the first tile of the route.
+     * @return Index of the last tile of the route, which is next to the surrounding walls.
+     */
+    private int buildRoute(@NotNull CellGrid grid, int source, int start) {
+        ++stamp;
+        visitedStamp[source] = stamp;
+        visitedStamp[start] = stamp;
+        parent[start] = -1;
+
+        // Routes must be at least as long as half the perimeter of the inside of the map when possible.
+        final var minLength = (grid.getRows() - 2 + grid.getCols() - 2) / 2;
+        var end = -1;
+        var endDepth = -1;
+
+        var depth = 0;
+        stackTile[0] = start;
+        stackOrder[0] = DIRECTION_ORDERS[rng.nextInt(ORDER_COUNT)];
+        stackCursor[0] = 0;
+
+        while (depth >= 0) {
+            final var tile = stackTile[depth];
+            if (stackCursor[depth] == 0 && isNextToWall(grid, tile) && depth + 1 > endDepth) {
+                end = tile;
+                endDepth = depth + 1;
+                if (endDepth >= minLength) {
+                    break;
+                }
+            }
+
+            if (stackCursor[depth] == DIRECTIONS.length) {
+                --depth;
+                continue;
+            }
+
+            final var d = DIRECTIONS[(stackOrder[depth] >> (stackCursor[depth]++ * 2)) & 0b11];
+            final var next = grid.neighborOf(tile, d);
+            if (!isInterior(grid, next) || visitedStamp[next] == stamp) {
+                continue;
+            }
+
+            visitedStamp[next] = stamp;
+            parent[next] = tile;
+            ++depth;
+            stackTile[depth] = next;
+            stackOrder[depth] = DIRECTION_ORDERS[rng.nextInt(ORDER_COUNT)];
+            stackCursor[depth] = 0;
+        }
+
+        Arrays.fill(onRoute, 0, grid.size(), false);
+        for (int i = end; i != -1; i = parent[i]) {
+            onRoute[i] = true;
+        }
+        return end;
+    }
+
+    /**
+     * @return Whether the tile is inside the surrounding walls.
+     */
+    private static boolean isInterior(@NotNull CellGrid grid, int index) {
+        if (index == -1) {
+            return false;
+        }
+
+        final var row = grid.rowOf(index);
+        final var col = grid.colOf(index);
+        return row > 0 && row < grid.getRows() - 1 && col > 0 && col < grid.getCols() - 1;
+    }
+
+    /**
+     * @return Whether the tile is inside the surrounding walls, and is next to one of them.
+     */
+    private static boolean isNextToWall(@NotNull CellGrid grid, int index) {
+        final var row = grid.rowOf(index);
+        final var col = grid.colOf(index);
+        return row == 1 || row == grid.getRows() - 2 || col == 1 || col == grid.getCols() - 2;
+    }
+
+    private void ensureCapacity(int size) {
+        if (visitedStamp.length >= size) {
+            return;
+        }
+
+        visitedStamp = new int[size];
+        stamp = 0;
+        parent = new int[size];
+        onRoute = new boolean[size];
+        stackTile = new int[size];
+        stackOrder = new int[size];
+        stackCursor = new int[size];
+    }
+}
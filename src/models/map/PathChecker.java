@@ -0,0 +1,238 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+import util.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the set of tiles in a {@link CellGrid} which can be reached from the source tile.
+ *
+ * <p>
+ * A tile is reachable if it is the source tile, if the source tile points to it, or if a reachable pipe has an opening
+ * towards it. The set is updated incrementally as pipes are placed and removed, so that checking whether the sink is
+ * reachable is a constant-time query:
+ * <ul>
+ * <li>Placing a pipe on a reachable tile only searches from the new pipe, and only visits newly-reachable tiles.</li>
+ * <li>Placing a pipe on an unreachable tile does not change the set.</li>
+ * <li>Removing a pipe from a reachable tile only revisits the tiles which were reached through that pipe.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The tile which each reachable tile was first reached from is recorded, forming a tree rooted at the source tile.
+ * When a pipe is removed, only its subtree can become unreachable: Every other reachable tile is still reached along
+ * its path in the tree, which does not pass through the removed pipe. The subtree is cleared, and the search restarts
+ * from the subtree tiles which another reachable tile still leads to.
+ * </p>
+ * <p>
+ * The search queue, the tree and the reachable set are allocated once per grid and reused, so updating the set does
+ * not allocate any memory.
+ * </p>
+ */
+final class PathChecker {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @NotNull
+    private final CellGrid grid;
+    private final int sourceIndex;
+    /**
+     * Ring buffer of tile indices to visit.
+     *
+     * <p>
+     * Since every tile is enqueued at most once, the buffer never holds more than {@link CellGrid#size()} elements.
+     * </p>
+     */
+    @NotNull
+    private final int[] queue;
+    private int queueHead = 0;
+    private int queueSize = 0;
+    /**
+     * Bitset of tiles which are reachable from the source tile.
+     */
+    @NotNull
+    private final long[] reachable;
+    /**
+     * Tile which each reachable tile is first reached from, or {@code -1} for the source tile.
+     */
+    @NotNull
+    private final int[] parent;
+    /**
+     * Buffer holding the subtree of a removed pipe.
+     */
+    @NotNull
+    private final int[] subtree;
+    private boolean sinkReachable = false;
+
+    /**
+     * Creates an instance and computes the set of reachable tiles.
+     *
+     * @param grid        Grid to track.
+     * @param sourceIndex Index of the source tile.
+     */
+    PathChecker(@NotNull CellGrid grid, int sourceIndex) {
+        this.grid = grid;
+        this.sourceIndex = sourceIndex;
+        this.queue = new int[grid.size()];
+        this.reachable = new long[(grid.size() + 63) >>> 6];
+        this.parent = new int[grid.size()];
+        this.subtree = new int[grid.size()];
+
+        recompute();
+    }
+
+    /**
+     * @return Whether the sink can be reached from the source tile.
+     */
+    boolean hasPath() {
+        return sinkReachable;
+    }
+
+    /**
+     * Updates the reachable set after a pipe is placed.
+     *
+     * @param index Index of the tile where the pipe is placed.
+     */
+    void onPipePlaced(int index) {
+        if (!isReachable(index)) {
+            return;
+        }
+
+        visitNeighbors(index);
+        search();
+    }
+
+    /**
+     * Updates the reachable set after a pipe is removed.
+     *
+     * <p>
+     * The removed tile itself stays reachable, since the tile it is reached from is not changed.
+     * </p>
+     *
+     * @param index Index of the tile where the pipe is removed.
+     */
+    void onPipeRemoved(int index) {
+        if (!isReachable(index)) {
+            return;
+        }
+
+        // Collect the tiles which were reached through the removed pipe. Children of a tile are always its neighbors.
+        var count = 0;
+        subtree[count++] = index;
+        for (int i = 0; i < count; ++i) {
+            final var thisIndex = subtree[i];
+            for (Direction dir : DIRECTIONS) {
+                final var next = grid.neighborOf(thisIndex, dir);
+                if (next != -1 && isReachable(next) && parent[next] == thisIndex) {
+                    subtree[count++] = next;
+                }
+            }
+        }
+
+        for (int i = 1; i < count; ++i) {
+            final var thisIndex = subtree[i];
+            reachable[thisIndex >>> 6] &= ~(1L << thisIndex);
+            if (grid.kindAt(thisIndex) == CellGrid.SINK) {
+                sinkReachable = false;
+            }
+        }
+
+        // Reconnect the subtree tiles which are still led to by a reachable tile outside of it.
+        queueHead = 0;
+        queueSize = 0;
+        for (int i = 1; i < count; ++i) {
+            final var thisIndex = subtree[i];
+            for (Direction dir : DIRECTIONS) {
+                final var from = grid.neighborOf(thisIndex, dir);
+                if (from != -1 && isReachable(from) && leadsTo(from, dir.getOpposite())) {
+                    visit(from, thisIndex);
+                    break;
+                }
+            }
+        }
+        search();
+    }
+
+    /**
+     * Recomputes the reachable set from the source tile.
+     */
+    private void recompute() {
+        Arrays.fill(reachable, 0L);
+        sinkReachable = false;
+
+        queueHead = 0;
+        queueSize = 0;
+        visit(-1, sourceIndex);
+        search();
+    }
+
+    /**
+     * Visits all tiles reachable from the tiles in the queue, until the queue is empty.
+     */
+    private void search() {
+        while (queueSize != 0) {
+            final int thisIndex = queue[queueHead];
+            queueHead = queueHead + 1 == queue.length ? 0 : queueHead + 1;
+            --queueSize;
+
+            visitNeighbors(thisIndex);
+        }
+    }
+
+    /**
+     * Visits the tiles which a tile leads to.
+     *
+     * @param index Index of the tile.
+     */
+    private void visitNeighbors(int index) {
+        for (Direction dir : DIRECTIONS) {
+            if (leadsTo(index, dir)) {
+                visit(index, grid.neighborOf(index, dir));
+            }
+        }
+    }
+
+    /**
+     * @param index Index of the tile.
+     * @param dir   Direction to check.
+     * @return Whether water in the tile flows towards {@code dir}, i.e. whether the tile is the source pointing to
+     * {@code dir}, or a pipe with an opening towards {@code dir}.
+     */
+    private boolean leadsTo(int index, @NotNull Direction dir) {
+        final var tile = grid.get(index);
+        switch (CellGrid.kindOf(tile)) {
+            case CellGrid.SOURCE:
+                return CellGrid.directionOf(tile) == dir;
+            case CellGrid.FILLABLE:
+                final var shape = CellGrid.shapeOf(tile);
+                return shape != null && shape.connects(dir);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Marks a tile as reachable, and enqueues it if it has not been visited.
+     *
+     * @param from  Index of the tile which leads to the visited tile, or {@code -1} for the source tile.
+     * @param index Index of the tile, or {@code -1} if the tile is out of bounds.
+     */
+    private void visit(int from, int index) {
+        if (index == -1 || isReachable(index)) {
+            return;
+        }
+
+        reachable[index >>> 6] |= 1L << index;
+        parent[index] = from;
+        if (grid.kindAt(index) == CellGrid.SINK) {
+            sinkReachable = true;
+            return;
+        }
+
+        queue[(queueHead + queueSize++) % queue.length] = index;
+    }
+
+    private boolean isReachable(int index) {
+        return (reachable[index >>> 6] & (1L << index)) != 0;
+    }
+}
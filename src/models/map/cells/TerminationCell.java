@@ -1,8 +1,5 @@
 package models.map.cells;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
 import org.jetbrains.annotations.NotNull;
 import util.Coordinate;
 import util.Direction;
@@ -13,15 +10,6 @@ import util.PipePatterns;
  */
 public class TerminationCell extends Cell {
 
-    /**
-     * Image representing an unfilled termination cell.
-     */
-    private static final Image UNFILLED_IMG = new Image(ResourceLoader.getResource("assets/images/dest-unfilled.png"));
-    /**
-     * Image representing a filled termination cell.
-     */
-    private static final Image FILLED_IMG = new Image(ResourceLoader.getResource("assets/images/dest-filled.png"));
-
     private boolean isFilled = false;
     @NotNull
     public final Direction pointingTo;
@@ -74,35 +62,6 @@ public class TerminationCell extends Cell {
         throw new IllegalStateException("Invalid pointingTo value!");
     }
 
-    @NotNull
-    @Override
-    public Renderer.CellImage getImageRep() {
-        // TODO
-        if (type == Type.SINK) {
-            switch (pointingTo) {
-                case UP:
-                    return isFilled ? new Renderer.CellImage(FILLED_IMG, 180) : new Renderer.CellImage(UNFILLED_IMG, 180);
-                case RIGHT:
-                    return isFilled ? new Renderer.CellImage(FILLED_IMG, 270) : new Renderer.CellImage(UNFILLED_IMG, 270);
-                case DOWN:
-                    return isFilled ? new Renderer.CellImage(FILLED_IMG, 0) : new Renderer.CellImage(UNFILLED_IMG, 0);
-                default:
-                    return isFilled ? new Renderer.CellImage(FILLED_IMG, 90) : new Renderer.CellImage(UNFILLED_IMG, 90);
-            }
-        } else {
-            switch (pointingTo) {
-                case UP:
-                    return isFilled ? new Renderer.CellImage(FILLED_IMG, 0) : new Renderer.CellImage(UNFILLED_IMG, 0);
-                case RIGHT:
-                    return isFilled ? new Renderer.CellImage(FILLED_IMG, 90) : new Renderer.CellImage(UNFILLED_IMG, 90);
-                case DOWN:
-                    return isFilled ? new Renderer.CellImage(FILLED_IMG, 180) : new Renderer.CellImage(UNFILLED_IMG, 180);
-                default:
-                    return isFilled ? new Renderer.CellImage(FILLED_IMG, 270) : new Renderer.CellImage(UNFILLED_IMG, 270);
-            }
-        }
-    }
-
     @NotNull
     @Override
     public String toSerializedRep() {
@@ -1,8 +1,5 @@
 package models.pipes;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
 import models.MapElement;
 import org.jetbrains.annotations.NotNull;
 import util.Direction;
@@ -40,50 +37,36 @@ public class Pipe implements MapElement {
     }
 
     /**
-     * @return List of connections for this pipe.
-     * @throws IllegalStateException if {@code this} pipe cannot be identified.
+     * @return Shape of this pipe.
+     */
+    @NotNull
+    public Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * @return List of connections for this pipe. The returned array is a copy, and may be modified by the caller.
      */
     @NotNull
     public Direction[] getConnections() {
-        switch (shape) {
-            case HORIZONTAL:
-                return new Direction[]{Direction.LEFT, Direction.RIGHT};
-            case VERTICAL:
-                return new Direction[]{Direction.UP, Direction.DOWN};
-            case TOP_LEFT:
-                return new Direction[]{Direction.UP, Direction.LEFT};
-            case TOP_RIGHT:
-                return new Direction[]{Direction.UP, Direction.RIGHT};
-            case BOTTOM_LEFT:
-                return new Direction[]{Direction.DOWN, Direction.LEFT};
-            case BOTTOM_RIGHT:
-                return new Direction[]{Direction.DOWN, Direction.RIGHT};
-            case CROSS:
-                return Direction.values();
-            default:
-                throw new IllegalStateException("Unknown shape");
-        }
+        return shape.getConnections();
     }
 
     /**
-     * @return The character representation of this pipe. Note that the representation is different for filled and
-     * unfilled pipes.
+     * @param d Direction to check.
+     * @return Whether this pipe has an opening towards {@code d}.
      */
-    @Override
-    public char toSingleChar() {
-        return shape.getCharByState(filled);
+    public boolean connects(@NotNull Direction d) {
+        return shape.connects(d);
     }
 
     /**
-     * {@inheritDoc}
-     *
-     * @return The image representation of this pipe. Note that the representation is different for filled and unfilled
-     * pipes.
+     * @return The character representation of this pipe. Note that the representation is different for filled and
+     * unfilled pipes.
      */
-    @NotNull
     @Override
-    public Renderer.CellImage getImageRep() {
-        return shape.getCellImage(filled);
+    public char toSingleChar() {
+        return shape.getCharByState(filled);
     }
 
     /**
@@ -111,79 +94,90 @@ public class Pipe implements MapElement {
     @NotNull
     @Override
     public String toSerializedRep() {
-        return shape.rep;
+        return shape.toSerializedRep();
     }
 
     /**
      * Helper class for different pipe shapes.
      */
     public enum Shape {
-        HORIZONTAL("HZ", PipePatterns.Filled.HORIZONTAL, PipePatterns.Unfilled.HORIZONTAL),
-        VERTICAL("VT", PipePatterns.Filled.VERTICAL, PipePatterns.Unfilled.VERTICAL),
-        TOP_LEFT("TL", PipePatterns.Filled.TOP_LEFT, PipePatterns.Unfilled.TOP_LEFT),
-        TOP_RIGHT("TR", PipePatterns.Filled.TOP_RIGHT, PipePatterns.Unfilled.TOP_RIGHT),
-        BOTTOM_LEFT("BL", PipePatterns.Filled.BOTTOM_LEFT, PipePatterns.Unfilled.BOTTOM_LEFT),
-        BOTTOM_RIGHT("BR", PipePatterns.Filled.BOTTOM_RIGHT, PipePatterns.Unfilled.BOTTOM_RIGHT),
-        CROSS("CR", PipePatterns.Filled.CROSS, PipePatterns.Unfilled.CROSS);
-
-        private static final Image CORNER_UNFILLED = new Image(ResourceLoader.getResource("assets/images/top-left-unfilled.png"));
-        private static final Image CORNER_FILLED = new Image(ResourceLoader.getResource("assets/images/top-left-filled.png"));
-        private static final Image CROSS_UNFILLED = new Image(ResourceLoader.getResource("assets/images/cross-unfilled.png"));
-        private static final Image CROSS_FILLED = new Image(ResourceLoader.getResource("assets/images/cross-filled.png"));
-        private static final Image STRAIGHT_UNFILLED = new Image(ResourceLoader.getResource("assets/images/vert-unfilled.png"));
-        private static final Image STRAIGHT_FILLED = new Image(ResourceLoader.getResource("assets/images/vert-filled.png"));
+        HORIZONTAL("HZ", PipePatterns.Filled.HORIZONTAL, PipePatterns.Unfilled.HORIZONTAL,
+                Direction.LEFT, Direction.RIGHT),
+        VERTICAL("VT", PipePatterns.Filled.VERTICAL, PipePatterns.Unfilled.VERTICAL,
+                Direction.UP, Direction.DOWN),
+        TOP_LEFT("TL", PipePatterns.Filled.TOP_LEFT, PipePatterns.Unfilled.TOP_LEFT,
+                Direction.UP, Direction.LEFT),
+        TOP_RIGHT("TR", PipePatterns.Filled.TOP_RIGHT, PipePatterns.Unfilled.TOP_RIGHT,
+                Direction.UP, Direction.RIGHT),
+        BOTTOM_LEFT("BL", PipePatterns.Filled.BOTTOM_LEFT, PipePatterns.Unfilled.BOTTOM_LEFT,
+                Direction.DOWN, Direction.LEFT),
+        BOTTOM_RIGHT("BR", PipePatterns.Filled.BOTTOM_RIGHT, PipePatterns.Unfilled.BOTTOM_RIGHT,
+                Direction.DOWN, Direction.RIGHT),
+        CROSS("CR", PipePatterns.Filled.CROSS, PipePatterns.Unfilled.CROSS,
+                Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT);
 
         @NotNull
         final String rep;
         final char filledChar;
         final char unfilledChar;
+        /**
+         * Directions which this shape has an opening towards.
+         */
+        @NotNull
+        private final Direction[] connections;
+        /**
+         * Bitmask of {@link Direction#getMask()} of all directions in {@link Shape#connections}.
+         */
+        private final int connectionMask;
 
-        Shape(@NotNull String rep, char filled, char unfilled) {
+        Shape(@NotNull String rep, char filled, char unfilled, @NotNull Direction... connections) {
             this.rep = rep;
             this.filledChar = filled;
             this.unfilledChar = unfilled;
+            this.connections = connections;
+
+            int mask = 0;
+            for (Direction d : connections) {
+                mask |= d.getMask();
+            }
+            this.connectionMask = mask;
         }
 
-        char getCharByState(boolean isFilled) {
-            return isFilled ? filledChar : unfilledChar;
+        /**
+         * @return List of connections for this shape. The returned array is a copy, and may be modified by the caller.
+         * Callers on hot paths should use {@link Shape#getConnectionMask()} or {@link Shape#connects(Direction)}, or
+         * keep their own copy.
+         */
+        @NotNull
+        public Direction[] getConnections() {
+            return connections.clone();
         }
 
         /**
-         * Retrieves the image representation of the pipe.
-         *
-         * @param isFilled Whether the pipe is filled.
-         * @return Image representation of the pipe.
-         * @throws IllegalStateException When {@code this} is not a known pipe shape.
+         * @return Bitmask of {@link Direction#getMask()} of all directions this shape has an opening towards.
          */
-        @NotNull Renderer.CellImage getCellImage(boolean isFilled) {
-            // TODO
-            Renderer.CellImage cellImage;
-            switch (rep) {
-                case "HZ":
-                    cellImage = isFilled ? new Renderer.CellImage(STRAIGHT_FILLED, 90) : new Renderer.CellImage(STRAIGHT_UNFILLED, 90);
-                    break;
-                case "VT":
-                    cellImage = isFilled ? new Renderer.CellImage(STRAIGHT_FILLED, 0) : new Renderer.CellImage(STRAIGHT_UNFILLED, 0);
-                    break;
-                case "TL":
-                    cellImage = isFilled ? new Renderer.CellImage(CORNER_FILLED, 0) : new Renderer.CellImage(CORNER_UNFILLED, 0);
-                    break;
-                case "TR":
-                    cellImage = isFilled ? new Renderer.CellImage(CORNER_FILLED, 90) : new Renderer.CellImage(CORNER_UNFILLED, 90);
-                    break;
-                case "BR":
-                    cellImage = isFilled ? new Renderer.CellImage(CORNER_FILLED, 180) : new Renderer.CellImage(CORNER_UNFILLED, 180);
-                    break;
-                case "BL":
-                    cellImage = isFilled ? new Renderer.CellImage(CORNER_FILLED, 270) : new Renderer.CellImage(CORNER_UNFILLED, 270);
-                    break;
-                case "CR":
-                    cellImage = isFilled ? new Renderer.CellImage(CROSS_FILLED, 0) : new Renderer.CellImage(CROSS_UNFILLED, 0);
-                    break;
-                default:
-                    throw new IllegalStateException();
-            }
-            return cellImage;
+        public int getConnectionMask() {
+            return connectionMask;
+        }
+
+        /**
+         * @param d Direction to check.
+         * @return Whether this shape has an opening towards {@code d}.
+         */
+        public boolean connects(@NotNull Direction d) {
+            return (connectionMask & d.getMask()) != 0;
+        }
+
+        /**
+         * @return Representation of this shape in a map file.
+         */
+        @NotNull
+        public String toSerializedRep() {
+            return rep;
+        }
+
+        char getCharByState(boolean isFilled) {
+            return isFilled ? filledChar : unfilledChar;
         }
     }
 }
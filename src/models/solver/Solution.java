@@ -0,0 +1,105 @@
+package models.solver;
+
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sequence of moves which connects the source to the sink using the fewest moves, as found by {@link Solver}.
+ */
+public final class Solution {
+
+    /**
+     * A single move of the player.
+     */
+    public static final class Step {
+
+        /**
+         * Shape of the pipe at the head of the queue when this step is taken.
+         */
+        @NotNull
+        public final Pipe.Shape shape;
+        /**
+         * Coordinate to place the pipe at, or {@code null} if the pipe is skipped.
+         */
+        @Nullable
+        public final Coordinate coord;
+
+        Step(@NotNull Pipe.Shape shape, @Nullable Coordinate coord) {
+            this.shape = shape;
+            this.coord = coord;
+        }
+
+        /**
+         * @return Whether this step skips the pipe instead of placing it.
+         */
+        public boolean isSkip() {
+            return coord == null;
+        }
+
+        @Override
+        public String toString() {
+            return coord == null ? "skip " + shape : "place " + shape + " at (" + coord.row + ", " + coord.col + ")";
+        }
+    }
+
+    @NotNull
+    private final List<Step> steps;
+    private final int placements;
+    private final int slack;
+
+    Solution(@NotNull List<Step> steps, int placements, int slack) {
+        this.steps = Collections.unmodifiableList(steps);
+        this.placements = placements;
+        this.slack = slack;
+    }
+
+    /**
+     * @return All moves of this solution, in the order they should be taken.
+     */
+    @NotNull
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return The first move of this solution, or {@code null} if the source is already connected to the sink.
+     */
+    @Nullable
+    public Step getHint() {
+        return steps.isEmpty() ? null : steps.get(0);
+    }
+
+    /**
+     * @return Total number of moves, including both placements and skips.
+     */
+    public int getMoves() {
+        return steps.size();
+    }
+
+    /**
+     * @return Number of pipes placed.
+     */
+    public int getPlacements() {
+        return placements;
+    }
+
+    /**
+     * @return Number of pipes skipped.
+     */
+    public int getSkips() {
+        return steps.size() - placements;
+    }
+
+    /**
+     * @return Smallest number of moves any pipe of this solution is placed ahead of the water, or
+     * {@link Integer#MAX_VALUE} if no pipes are placed. A smaller slack means the level leaves less room for mistakes.
+     */
+    public int getSlack() {
+        return slack;
+    }
+}
@@ -0,0 +1,879 @@
+package models.solver;
+
+import models.map.CellGrid;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Searches for the solution of a level which uses the fewest moves.
+ *
+ * <p>
+ * A solution is a route of pipes from the source to the sink. A route may pass through pipes which are already on the
+ * map without consuming a pipe, and may cross itself through a {@link Pipe.Shape#CROSS} pipe. Pipes are dequeued in
+ * order, and each one is either placed on the route or skipped, so the number of moves of a solution is the number of
+ * pipes dequeued. The pipes of a route do not need to be placed in route order; Each pipe of the route uses the
+ * earliest unused pipe of its shape in the queue.
+ * </p>
+ * <p>
+ * Water starts flowing after {@code delay} units of time, and advances one tile along the route per unit of time. A
+ * pipe must be placed no later than the water reaches its position on the route. How the time advances is determined by
+ * {@link FlowModel}.
+ * </p>
+ * <p>
+ * The search is an iterative-deepening depth-first search on the number of moves, with the following pruning:
+ * <ul>
+ * <li>Before searching, a relaxed search which ignores self-intersections and timing determines whether the sink is
+ * reachable at all.</li>
+ * <li>Tiles which cannot reach the sink through fillable tiles are never entered.</li>
+ * <li>Every empty tile between the head of the route and the sink needs its own pipe, apart from cross pipes which
+ * may be passed through again. This bounds the number of moves still needed, and branches whose bound exceeds the
+ * limit of the current iteration are cut.</li>
+ * <li>Branches which place a pipe after the water would have reached it are cut.</li>
+ * <li>When the timing of the water cannot affect the result, a transposition table remembers every searched route, so
+ * that a route which covers the same pipe openings and ends at the same tile is not searched twice in the same
+ * iteration.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Routes are encoded as the set of pipe openings they use and the cross pipes they place, together with the number of
+ * pipes of each shape consumed. All buffers are allocated once per solver, so the search itself does not allocate
+ * memory.
+ * </p>
+ */
+public final class Solver {
+
+    /**
+     * How time advances for the flow of water.
+     */
+    public enum FlowModel {
+        /**
+         * Time advances by one unit when a pipe is placed. Skipping a pipe does not advance time. This is the rule used
+         * by the text-based game.
+         */
+        PLACEMENTS,
+        /**
+         * Time advances by one unit on every move, whether a pipe is placed or skipped. This approximates a real-time
+         * game where the player takes one move per flow of water.
+         */
+        MOVES
+    }
+
+    /**
+     * Default maximum number of search nodes to expand.
+     */
+    public static final long DEFAULT_NODE_BUDGET = 5_000_000;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Pipe.Shape[] SHAPES = Pipe.Shape.values();
+    /**
+     * Connections of each shape, indexed by the ordinal of {@link Pipe.Shape}.
+     */
+    private static final Direction[][] CONNECTIONS = Arrays.stream(SHAPES)
+            .map(Pipe.Shape::getConnections)
+            .toArray(Direction[][]::new);
+    /**
+     * Maximum number of children of a search node, which is the number of openings of all shapes which connect to a
+     * given side, excluding that side.
+     */
+    private static final int MAX_CHILDREN = 6;
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+    private static final byte NO_SHAPE = -1;
+    private static final int CROSS = Pipe.Shape.CROSS.ordinal();
+
+    @NotNull
+    private final CellGrid grid;
+    /**
+     * Ordinals of the shapes in the queue.
+     */
+    @NotNull
+    private final int[] queue;
+    /**
+     * {@code occurrences[s][i]}: Index of the {@code i}-th pipe of shape {@code s} in the queue.
+     */
+    @NotNull
+    private final int[][] occurrences;
+    private final int delay;
+    @NotNull
+    private final FlowModel flowModel;
+    private final boolean unboundedQueue;
+    private final long nodeBudget;
+
+    private final int sourceIndex;
+    /**
+     * Lower bound of the number of pipes needed to reach the sink from each tile, including the tile itself.
+     */
+    @NotNull
+    private final int[] distToSink;
+
+    /**
+     * Bitmask of openings of each tile which are used by the current route.
+     */
+    @NotNull
+    private final byte[] usedSides;
+    /**
+     * Ordinal of the shape placed on each tile by the current route, or {@link Solver#NO_SHAPE}.
+     */
+    @NotNull
+    private final byte[] placedShape;
+    /**
+     * Random keys for every opening of every tile, used to hash {@link Solver#usedSides}.
+     */
+    @NotNull
+    private final long[] sideKeys;
+    /**
+     * Random keys for a {@link Pipe.Shape#CROSS} pipe placed on every tile, since a cross pipe can be passed through
+     * again while other shapes cannot.
+     */
+    @NotNull
+    private final long[] crossKeys;
+    private long routeHash;
+    /**
+     * Number of {@link Pipe.Shape#CROSS} pipes placed by the current route. Each of them may later be passed through
+     * without consuming a pipe.
+     */
+    private int crossesPlaced;
+    /**
+     * Number of pipes of each shape taken from the queue by the current route.
+     */
+    @NotNull
+    private final int[] shapeUses = new int[SHAPES.length];
+    /**
+     * Number of random pipes after the end of the queue used by the current route.
+     */
+    private int tailUses;
+
+    // Pipes placed by the current route, in route order.
+    @NotNull
+    private final int[] placementTile;
+    @NotNull
+    private final int[] placementShape;
+    @NotNull
+    private final int[] placementIndex;
+    @NotNull
+    private final int[] placementPos;
+    /**
+     * Number of pipes of the route which are dequeued no later than each pipe, i.e. the time each pipe is placed under
+     * {@link FlowModel#PLACEMENTS}.
+     */
+    @NotNull
+    private final int[] placementRank;
+    private int placementCount;
+
+    @NotNull
+    private final long[] memoKeys;
+    @NotNull
+    private final int[] memoIterations;
+    /**
+     * Number of the current iteration of {@link Solver#search(int, Direction)}. Entries in the transposition table are
+     * only valid within the iteration which recorded them.
+     */
+    private int iteration;
+    /**
+     * Smallest bound of moves which exceeds the limit of the current iteration.
+     */
+    private int nextLimit;
+
+    // Search frames, indexed by depth.
+    @NotNull
+    private final int[] frameHead;
+    @NotNull
+    private final int[] frameFlow;
+    @NotNull
+    private final int[] framePos;
+    @NotNull
+    private final int[] frameMoves;
+    @NotNull
+    private final int[] frameCursor;
+    @NotNull
+    private final int[] frameEnd;
+    @NotNull
+    private final int[] frameApplied;
+
+    // Children of search frames, indexed by (depth * MAX_CHILDREN + i).
+    @NotNull
+    private final int[] childNext;
+    @NotNull
+    private final int[] childExit;
+    @NotNull
+    private final int[] childShape;
+    @NotNull
+    private final int[] childIndex;
+    @NotNull
+    private final int[] childBound;
+
+    @Nullable
+    private Solution solution;
+    private long nodesExpanded;
+    private boolean exhaustive;
+
+    /**
+     * Creates a solver which uses {@link FlowModel#PLACEMENTS}, only uses the given pipes, and expands at most
+     * {@link Solver#DEFAULT_NODE_BUDGET} nodes.
+     *
+     * @param grid  Cells of the level.
+     * @param pipes Pipes in the order they are dequeued.
+     * @param delay Delay before the water starts flowing.
+     * @throws IllegalArgumentException if the level does not contain a source tile.
+     */
+    public Solver(@NotNull CellGrid grid, @NotNull List<Pipe> pipes, int delay) {
+        this(grid, pipes, delay, FlowModel.PLACEMENTS, false, DEFAULT_NODE_BUDGET);
+    }
+
+    /**
+     * @param grid           Cells of the level.
+     * @param pipes          Pipes in the order they are dequeued.
+     * @param delay          Delay before the water starts flowing.
+     * @param flowModel      How time advances for the flow of water.
+     * @param unboundedQueue If {@code true}, any shape is assumed to be available after {@code pipes} are used up, as
+     *                       the queue is filled with random pipes.
+     * @param nodeBudget     Maximum number of search nodes to expand.
+     * @throws IllegalArgumentException if the level does not contain a source tile.
+     */
+    public Solver(@NotNull CellGrid grid, @NotNull List<Pipe> pipes, int delay, @NotNull FlowModel flowModel,
+                  boolean unboundedQueue, long nodeBudget) {
+        this.grid = grid;
+        this.delay = delay;
+        this.flowModel = flowModel;
+        this.unboundedQueue = unboundedQueue;
+        this.nodeBudget = nodeBudget;
+
+        this.queue = new int[pipes.size()];
+        final var shapeCounts = new int[SHAPES.length];
+        for (int i = 0; i < queue.length; ++i) {
+            queue[i] = pipes.get(i).getShape().ordinal();
+            ++shapeCounts[queue[i]];
+        }
+        this.occurrences = new int[SHAPES.length][];
+        for (int s = 0; s < SHAPES.length; ++s) {
+            occurrences[s] = new int[shapeCounts[s]];
+            shapeCounts[s] = 0;
+        }
+        for (int i = 0; i < queue.length; ++i) {
+            occurrences[queue[i]][shapeCounts[queue[i]]++] = i;
+        }
+
+        final var size = grid.size();
+        var source = -1;
+        for (int i = 0; i < size; ++i) {
+            if (grid.kindAt(i) == CellGrid.SOURCE) {
+                source = i;
+                break;
+            }
+        }
+        if (source == -1) {
+            throw new IllegalArgumentException("Level does not contain a source tile");
+        }
+        this.sourceIndex = source;
+        this.distToSink = computeDistToSink();
+
+        this.usedSides = new byte[size];
+        this.placedShape = new byte[size];
+        this.sideKeys = new long[size * DIRECTIONS.length];
+        this.crossKeys = new long[size];
+        final var rng = new SplittableRandom(size);
+        for (int i = 0; i < sideKeys.length; ++i) {
+            sideKeys[i] = rng.nextLong();
+        }
+        for (int i = 0; i < crossKeys.length; ++i) {
+            crossKeys[i] = rng.nextLong();
+        }
+
+        this.placementTile = new int[size];
+        this.placementShape = new int[size];
+        this.placementIndex = new int[size];
+        this.placementPos = new int[size];
+        this.placementRank = new int[size];
+
+        final var memoCapacity = Integer.highestOneBit(Math.max(1 << 12, Math.min(1 << 20, size * 64)));
+        this.memoKeys = new long[memoCapacity];
+        this.memoIterations = new int[memoCapacity];
+
+        // Every frame enters one unused opening of a tile and leaves through another one.
+        final var maxDepth = size * DIRECTIONS.length / 2 + 1;
+        this.frameHead = new int[maxDepth];
+        this.frameFlow = new int[maxDepth];
+        this.framePos = new int[maxDepth];
+        this.frameMoves = new int[maxDepth];
+        this.frameCursor = new int[maxDepth];
+        this.frameEnd = new int[maxDepth];
+        this.frameApplied = new int[maxDepth];
+        this.childNext = new int[maxDepth * MAX_CHILDREN];
+        this.childExit = new int[maxDepth * MAX_CHILDREN];
+        this.childShape = new int[maxDepth * MAX_CHILDREN];
+        this.childIndex = new int[maxDepth * MAX_CHILDREN];
+        this.childBound = new int[maxDepth * MAX_CHILDREN];
+    }
+
+    /**
+     * @return Number of search nodes expanded by the last call to {@link Solver#solve()}.
+     */
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * @return Whether the last call to {@link Solver#solve()} finished without running out of its node budget. If
+     * {@code false}, no solution was returned, but a solution may still exist.
+     */
+    public boolean isExhaustive() {
+        return exhaustive;
+    }
+
+    /**
+     * Searches for the solution with the fewest moves.
+     *
+     * @return The solution with the fewest moves, or {@code null} if no solution exists or the node budget is
+     * exhausted. The two cases can be distinguished with {@link Solver#isExhaustive()}.
+     */
+    @Nullable
+    public Solution solve() {
+        nodesExpanded = 0;
+        exhaustive = true;
+        solution = null;
+
+        final var sourceDir = CellGrid.directionOf(grid.get(sourceIndex));
+        final var start = grid.neighborOf(sourceIndex, sourceDir);
+        if (start == -1 || distToSink[start] >= UNREACHABLE) {
+            return null;
+        }
+        if (grid.kindAt(start) == CellGrid.SINK) {
+            return new Solution(new ArrayList<>(), 0, Integer.MAX_VALUE);
+        }
+        if (!isSinkReachableRelaxed(start, sourceDir)) {
+            return null;
+        }
+
+        Arrays.fill(usedSides, (byte) 0);
+        Arrays.fill(placedShape, NO_SHAPE);
+        Arrays.fill(shapeUses, 0);
+        Arrays.fill(memoIterations, 0);
+        routeHash = 0;
+        crossesPlaced = 0;
+        tailUses = 0;
+        placementCount = 0;
+        iteration = 0;
+
+        search(start, sourceDir);
+        return solution;
+    }
+
+    /**
+     * Runs iterative-deepening searches from the tile next to the source, with increasing limits on the number of
+     * moves.
+     *
+     * <p>
+     * Since the bound of moves never overestimates, the first solution found is a solution with the fewest moves.
+     * </p>
+     *
+     * @param start     Index of the tile next to the source.
+     * @param sourceDir Direction the source is pointing to.
+     */
+    private void search(int start, @NotNull Direction sourceDir) {
+        var limit = distToSink[start];
+        while (true) {
+            ++iteration;
+            nextLimit = UNREACHABLE;
+
+            if (searchWithLimit(start, sourceDir, limit) || !exhaustive) {
+                return;
+            }
+            if (nextLimit >= UNREACHABLE || (!unboundedQueue && nextLimit > queue.length)) {
+                return;
+            }
+            limit = nextLimit;
+        }
+    }
+
+    /**
+     * Runs a depth-first search from the tile next to the source, cutting all branches which need more moves than the
+     * limit.
+     *
+     * @param start     Index of the tile next to the source.
+     * @param sourceDir Direction the source is pointing to.
+     * @param limit     Maximum number of moves.
+     * @return Whether a solution is found.
+     */
+    private boolean searchWithLimit(int start, @NotNull Direction sourceDir, int limit) {
+        // If every pipe is dequeued before the water can reach it, the timing does not affect the result, and routes
+        // covering the same openings are interchangeable.
+        final var useMemo = limit <= delay + 1;
+
+        var depth = 0;
+        frameHead[0] = start;
+        frameFlow[0] = sourceDir.ordinal();
+        framePos[0] = 1;
+        frameMoves[0] = 0;
+        expand(0);
+
+        while (depth >= 0) {
+            if (frameApplied[depth] != -1) {
+                undo(depth, frameApplied[depth]);
+                frameApplied[depth] = -1;
+            }
+            if (frameCursor[depth] == frameEnd[depth]) {
+                --depth;
+                continue;
+            }
+            if (nodesExpanded >= nodeBudget) {
+                exhaustive = false;
+                return false;
+            }
+
+            final var c = frameCursor[depth]++;
+            if (childBound[c] > limit) {
+                // Children are sorted by their bound, so none of the remaining children are within the limit either.
+                nextLimit = Math.min(nextLimit, childBound[c]);
+                frameCursor[depth] = frameEnd[depth];
+                continue;
+            }
+            if (!apply(depth, c)) {
+                continue;
+            }
+            frameApplied[depth] = c;
+
+            final var next = childNext[c];
+            final var moves = Math.max(frameMoves[depth], childIndex[c] + 1);
+            if (grid.kindAt(next) == CellGrid.SINK) {
+                solution = buildSolution(moves);
+                return true;
+            }
+            if (useMemo && !memoize(next, childExit[c])) {
+                continue;
+            }
+
+            ++depth;
+            frameHead[depth] = next;
+            frameFlow[depth] = childExit[c];
+            framePos[depth] = framePos[depth - 1] + 1;
+            frameMoves[depth] = moves;
+            expand(depth);
+            ++nodesExpanded;
+        }
+
+        return false;
+    }
+
+    /**
+     * Generates the children of a search frame, sorted by their bound of moves.
+     *
+     * @param depth Depth of the frame.
+     */
+    private void expand(int depth) {
+        final var base = depth * MAX_CHILDREN;
+        frameCursor[depth] = base;
+        frameEnd[depth] = base;
+        frameApplied[depth] = -1;
+
+        final var head = frameHead[depth];
+        if (grid.kindAt(head) != CellGrid.FILLABLE) {
+            return;
+        }
+
+        final var entry = DIRECTIONS[frameFlow[depth]].getOpposite();
+        if ((usedSides[head] & entry.getMask()) != 0) {
+            return;
+        }
+
+        final Pipe.Shape existing;
+        if (placedShape[head] != NO_SHAPE) {
+            existing = SHAPES[placedShape[head]];
+        } else {
+            existing = CellGrid.shapeOf(grid.get(head));
+        }
+        var count = 0;
+        if (existing != null) {
+            if (existing.connects(entry)) {
+                count = addChildren(depth, count, entry, existing, NO_SHAPE, -1);
+            }
+        } else {
+            for (var shape : SHAPES) {
+                if (!shape.connects(entry)) {
+                    continue;
+                }
+
+                final var pipeIndex = nextPipeIndex(shape.ordinal());
+                if (pipeIndex == -1) {
+                    continue;
+                }
+                if (flowModel == FlowModel.MOVES && pipeIndex + 1 > delay + framePos[depth]) {
+                    continue;
+                }
+
+                count = addChildren(depth, count, entry, shape, shape.ordinal(), pipeIndex);
+            }
+        }
+
+        // Insertion sort by bound of moves, so that the most promising child is searched first.
+        for (int i = base + 1; i < base + count; ++i) {
+            for (int j = i; j > base && childBound[j] < childBound[j - 1]; --j) {
+                swapChildren(j, j - 1);
+            }
+        }
+        frameEnd[depth] = base + count;
+    }
+
+    /**
+     * Adds a child for every unused opening of a pipe at the head of a frame.
+     *
+     * @param depth         Depth of the frame.
+     * @param count         Number of children added so far.
+     * @param entry         Side of the head which the water enters from.
+     * @param shape         Shape of the pipe at the head.
+     * @param placedOrdinal Ordinal of the shape if the pipe is placed by the route, or {@link Solver#NO_SHAPE}.
+     * @param pipeIndex     Index of the pipe in the queue if the pipe is placed by the route, or {@code -1}.
+     * @return The new number of children.
+     */
+    private int addChildren(int depth, int count, @NotNull Direction entry, @NotNull Pipe.Shape shape,
+                            int placedOrdinal, int pipeIndex) {
+        final var head = frameHead[depth];
+        final var moves = Math.max(frameMoves[depth], pipeIndex + 1);
+        final var placements = placementCount + (placedOrdinal != NO_SHAPE ? 1 : 0);
+        final var crosses = crossesPlaced + (placedOrdinal == CROSS ? 1 : 0);
+
+        for (var exit : CONNECTIONS[shape.ordinal()]) {
+            if (exit == entry || (usedSides[head] & exit.getMask()) != 0) {
+                continue;
+            }
+
+            final var next = grid.neighborOf(head, exit);
+            if (next == -1 || distToSink[next] >= UNREACHABLE) {
+                continue;
+            }
+            if ((usedSides[next] & exit.getOpposite().getMask()) != 0) {
+                continue;
+            }
+
+            final var c = depth * MAX_CHILDREN + count++;
+            childNext[c] = next;
+            childExit[c] = exit.ordinal();
+            childShape[c] = placedOrdinal;
+            childIndex[c] = pipeIndex;
+            childBound[c] = Math.max(moves, placements + distToSink[next] - crosses);
+        }
+        return count;
+    }
+
+    private void swapChildren(int a, int b) {
+        swap(childNext, a, b);
+        swap(childExit, a, b);
+        swap(childShape, a, b);
+        swap(childIndex, a, b);
+        swap(childBound, a, b);
+    }
+
+    private static void swap(@NotNull int[] arr, int a, int b) {
+        final var tmp = arr[a];
+        arr[a] = arr[b];
+        arr[b] = tmp;
+    }
+
+    /**
+     * @param shape Ordinal of the shape.
+     * @return Index of the next unused pipe of the given shape in the queue, or {@code -1} if there are none.
+     */
+    private int nextPipeIndex(int shape) {
+        if (shapeUses[shape] < occurrences[shape].length) {
+            return occurrences[shape][shapeUses[shape]];
+        }
+        return unboundedQueue ? queue.length + tailUses : -1;
+    }
+
+    /**
+     * Extends the route through the head of a frame, towards one of its children.
+     *
+     * @return {@code false} if the pipe of the child cannot be placed before the water reaches it, in which case the
+     * route is left unchanged.
+     */
+    private boolean apply(int depth, int c) {
+        if (childShape[c] != NO_SHAPE && !pushPlacement(depth, c)) {
+            return false;
+        }
+
+        final var head = frameHead[depth];
+        final var entry = DIRECTIONS[frameFlow[depth]].getOpposite().ordinal();
+        final var exit = childExit[c];
+
+        usedSides[head] |= (1 << entry) | (1 << exit);
+        routeHash ^= sideKeys[head * DIRECTIONS.length + entry] ^ sideKeys[head * DIRECTIONS.length + exit];
+        if (childShape[c] != NO_SHAPE) {
+            placedShape[head] = (byte) childShape[c];
+            if (childShape[c] == CROSS) {
+                routeHash ^= crossKeys[head];
+                ++crossesPlaced;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reverts {@link Solver#apply(int, int)}.
+     */
+    private void undo(int depth, int c) {
+        final var head = frameHead[depth];
+        final var entry = DIRECTIONS[frameFlow[depth]].getOpposite().ordinal();
+        final var exit = childExit[c];
+
+        usedSides[head] &= ~((1 << entry) | (1 << exit));
+        routeHash ^= sideKeys[head * DIRECTIONS.length + entry] ^ sideKeys[head * DIRECTIONS.length + exit];
+        if (childShape[c] != NO_SHAPE) {
+            placedShape[head] = NO_SHAPE;
+            if (childShape[c] == CROSS) {
+                routeHash ^= crossKeys[head];
+                --crossesPlaced;
+            }
+            popPlacement();
+        }
+    }
+
+    /**
+     * Records the pipe of a child as a placement of the route.
+     *
+     * <p>
+     * Under {@link FlowModel#PLACEMENTS}, pipes are placed in the order they are dequeued, so placing a new pipe delays
+     * every pipe of the route which is dequeued after it. The placement is rejected if this causes any pipe to be
+     * placed after the water reaches it.
+     * </p>
+     *
+     * @return Whether the pipe is placed.
+     */
+    private boolean pushPlacement(int depth, int c) {
+        final var pipeIndex = childIndex[c];
+        final var pos = framePos[depth];
+
+        var rank = 1;
+        if (flowModel == FlowModel.PLACEMENTS) {
+            for (int i = 0; i < placementCount; ++i) {
+                if (placementIndex[i] < pipeIndex) {
+                    ++rank;
+                } else if (placementRank[i] + 1 > delay + placementPos[i]) {
+                    return false;
+                }
+            }
+            if (rank > delay + pos) {
+                return false;
+            }
+            for (int i = 0; i < placementCount; ++i) {
+                if (placementIndex[i] > pipeIndex) {
+                    ++placementRank[i];
+                }
+            }
+        }
+
+        placementTile[placementCount] = frameHead[depth];
+        placementShape[placementCount] = childShape[c];
+        placementIndex[placementCount] = pipeIndex;
+        placementPos[placementCount] = pos;
+        placementRank[placementCount] = rank;
+        ++placementCount;
+
+        if (pipeIndex < queue.length) {
+            ++shapeUses[childShape[c]];
+        } else {
+            ++tailUses;
+        }
+        return true;
+    }
+
+    /**
+     * Reverts {@link Solver#pushPlacement(int, int)}.
+     */
+    private void popPlacement() {
+        --placementCount;
+        final var pipeIndex = placementIndex[placementCount];
+
+        if (pipeIndex < queue.length) {
+            --shapeUses[placementShape[placementCount]];
+        } else {
+            --tailUses;
+        }
+
+        if (flowModel == FlowModel.PLACEMENTS) {
+            for (int i = 0; i < placementCount; ++i) {
+                if (placementIndex[i] > pipeIndex) {
+                    --placementRank[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a search state in the transposition table.
+     *
+     * @param head Index of the head of the route.
+     * @param flow Ordinal of the direction the water flows into the head.
+     * @return {@code false} if the same state has already been searched in this iteration.
+     */
+    private boolean memoize(int head, int flow) {
+        final var key = routeHash ^ sideKeys[head * DIRECTIONS.length + flow] * 0x9E3779B97F4A7C15L;
+        final var slot = (int) (key ^ (key >>> 32)) & (memoKeys.length - 1);
+        if (memoIterations[slot] == iteration && memoKeys[slot] == key) {
+            return false;
+        }
+
+        memoKeys[slot] = key;
+        memoIterations[slot] = iteration;
+        return true;
+    }
+
+    /**
+     * Creates a solution from the current route.
+     *
+     * @param moves Number of moves of the route.
+     * @return The solution.
+     */
+    @NotNull
+    private Solution buildSolution(int moves) {
+        final var tileOfIndex = new int[moves];
+        final var shapeOfIndex = new int[moves];
+        Arrays.fill(tileOfIndex, -1);
+
+        var slack = Integer.MAX_VALUE;
+        for (int i = 0; i < placementCount; ++i) {
+            tileOfIndex[placementIndex[i]] = placementTile[i];
+            shapeOfIndex[placementIndex[i]] = placementShape[i];
+
+            final var time = flowModel == FlowModel.PLACEMENTS ? placementRank[i] : placementIndex[i] + 1;
+            slack = Math.min(slack, delay + placementPos[i] - time);
+        }
+
+        final var steps = new ArrayList<Solution.Step>(moves);
+        for (int i = 0; i < moves; ++i) {
+            if (tileOfIndex[i] != -1) {
+                steps.add(new Solution.Step(SHAPES[shapeOfIndex[i]], grid.coordinateOf(tileOfIndex[i])));
+            } else {
+                steps.add(new Solution.Step(SHAPES[queue[i]], null));
+            }
+        }
+
+        return new Solution(steps, placementCount, slack);
+    }
+
+    /**
+     * Computes {@link Solver#distToSink} with a 0-1 breadth-first search from the sink. Entering an empty tile costs
+     * one pipe, and entering a tile which already has a pipe is free.
+     */
+    @NotNull
+    private int[] computeDistToSink() {
+        final var size = grid.size();
+        final var dist = new int[size];
+        Arrays.fill(dist, UNREACHABLE);
+
+        // In a 0-1 search, every tile is pushed at most twice.
+        final var deque = new int[size * 2 + 1];
+        var head = 0;
+        var tail = 0;
+        for (int i = 0; i < size; ++i) {
+            if (grid.kindAt(i) == CellGrid.SINK) {
+                dist[i] = 0;
+                deque[tail++] = i;
+            }
+        }
+
+        while (head != tail) {
+            final var index = deque[head];
+            head = head + 1 == deque.length ? 0 : head + 1;
+
+            for (var d : DIRECTIONS) {
+                final var next = grid.neighborOf(index, d);
+                if (next == -1 || grid.kindAt(next) != CellGrid.FILLABLE) {
+                    continue;
+                }
+
+                final var cost = CellGrid.shapeOf(grid.get(next)) == null ? 1 : 0;
+                if (dist[index] + cost >= dist[next]) {
+                    continue;
+                }
+
+                dist[next] = dist[index] + cost;
+                if (cost == 0) {
+                    head = head == 0 ? deque.length - 1 : head - 1;
+                    deque[head] = next;
+                } else {
+                    deque[tail] = next;
+                    tail = tail + 1 == deque.length ? 0 : tail + 1;
+                }
+            }
+        }
+
+        return dist;
+    }
+
+    /**
+     * Determines whether the sink is reachable if the route is allowed to reuse tiles.
+     *
+     * <p>
+     * This is a breadth-first search over states, where each state is a tile together with the direction the water
+     * flows into it, and each state is visited at most once. A tile which already has a pipe can only be left through
+     * that pipe, and an empty tile can be left through any shape which is available at all, regardless of how many
+     * pipes of that shape there are or in which order they arrive. The relaxation therefore never misses a route which
+     * the exact search could find.
+     * </p>
+     *
+     * @param start     Index of the tile next to the source.
+     * @param sourceDir Direction the source is pointing to.
+     * @return Whether the sink is reachable.
+     */
+    private boolean isSinkReachableRelaxed(int start, @NotNull Direction sourceDir) {
+        final var stateCount = grid.size() * DIRECTIONS.length;
+        final var visited = new boolean[stateCount];
+        final var states = new int[stateCount];
+        var queueSize = 0;
+
+        final var startState = start * DIRECTIONS.length + sourceDir.ordinal();
+        visited[startState] = true;
+        states[queueSize++] = startState;
+
+        for (int q = 0; q < queueSize; ++q) {
+            final var state = states[q];
+            final var index = state / DIRECTIONS.length;
+            final var entry = DIRECTIONS[state % DIRECTIONS.length].getOpposite();
+            if (grid.kindAt(index) != CellGrid.FILLABLE) {
+                continue;
+            }
+
+            final var existing = CellGrid.shapeOf(grid.get(index));
+            for (var shape : SHAPES) {
+                if (!shape.connects(entry)) {
+                    continue;
+                }
+                if (existing != null && existing != shape) {
+                    // Only the pipe which is already placed can be used.
+                    continue;
+                }
+                if (existing == null && !unboundedQueue && occurrences[shape.ordinal()].length == 0) {
+                    // The shape never arrives.
+                    continue;
+                }
+
+                for (var exit : CONNECTIONS[shape.ordinal()]) {
+                    if (exit == entry) {
+                        continue;
+                    }
+
+                    final var next = grid.neighborOf(index, exit);
+                    if (next == -1) {
+                        continue;
+                    }
+                    if (grid.kindAt(next) == CellGrid.SINK) {
+                        return true;
+                    }
+
+                    final var nextState = next * DIRECTIONS.length + exit.ordinal();
+                    if (!visited[nextState]) {
+                        visited[nextState] = true;
+                        states[queueSize++] = nextState;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -2,6 +2,7 @@ package textgame.game;
 
 import io.Deserializer;
 import models.CellStack;
+import models.PipeGenerator;
 import models.PipeQueue;
 import models.map.Map;
 import models.map.cells.Cell;
@@ -50,9 +51,28 @@ public class Game {
      * @param pipes List of pre-generated pipes, if any.
      */
     public Game(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes) {
+        this(rows, cols, delay, cells, pipes, new PipeGenerator());
+    }
+
+    /**
+     * Creates a game with a given map, various properties, and a given source of random pipes.
+     *
+     * <p>
+     * Games created with the same properties and generators with the same seed replay exactly the same way.
+     * </p>
+     *
+     * @param rows      Number of rows of the given map.
+     * @param cols      Number of columns of the given map.
+     * @param delay     Delay in number of rounds before filling the pipes.
+     * @param cells     Cells of the map.
+     * @param pipes     List of pre-generated pipes, if any.
+     * @param generator Generator of pipes once {@code pipes} are used up.
+     */
+    public Game(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes,
+                @NotNull PipeGenerator generator) {
         map = new Map(rows, cols, cells);
 
-        pipeQueue = new PipeQueue(pipes);
+        pipeQueue = new PipeQueue(pipes, generator);
         delayBar = new DelayBar(delay);
     }
 
@@ -127,7 +147,7 @@ public class Game {
     public boolean undoStep() {
         var undoCell = cellStack.pop();
         if (undoCell != null) {
-            if (undoCell.getPipe().map(Pipe::getFilled).orElse(false)) {
+            if (map.isFilled(undoCell.coord)) {
                 cellStack.push(undoCell);
                 return false;
             }
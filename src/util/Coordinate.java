@@ -4,8 +4,6 @@ import models.map.Map;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Objects;
-
 /**
  * Representation of a coordinate in {@link Map}.
  */
@@ -40,7 +38,7 @@ public class Coordinate {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * row + col;
     }
 
     /**
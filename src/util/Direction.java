@@ -7,7 +7,28 @@ import org.jetbrains.annotations.NotNull;
  * Represents a direction in reference to a {@link Cell}.
  */
 public enum Direction {
-    UP, DOWN, LEFT, RIGHT;
+    UP(-1, 0), DOWN(1, 0), LEFT(0, -1), RIGHT(0, 1);
+
+    /**
+     * Row offset of a unit step towards {@code this} direction.
+     */
+    public final int rowOffset;
+    /**
+     * Column offset of a unit step towards {@code this} direction.
+     */
+    public final int colOffset;
+    /**
+     * Unit coordinate offset of {@code this} direction. Since {@link Coordinate} is immutable, this instance can be
+     * shared.
+     */
+    @NotNull
+    private final Coordinate offset;
+
+    Direction(int rowOffset, int colOffset) {
+        this.rowOffset = rowOffset;
+        this.colOffset = colOffset;
+        this.offset = new Coordinate(rowOffset, colOffset);
+    }
 
     /**
      * @return The opposite direction of {@code this}.
@@ -33,18 +54,14 @@ public enum Direction {
      */
     @NotNull
     public Coordinate getOffset() {
-        switch (this) {
-            case UP:
-                return new Coordinate(-1, 0);
-            case DOWN:
-                return new Coordinate(1, 0);
-            case LEFT:
-                return new Coordinate(0, -1);
-            case RIGHT:
-                return new Coordinate(0, 1);
-            default:
-                throw new IllegalStateException("Unknown direction");
-        }
+        return offset;
+    }
+
+    /**
+     * @return A bitmask with only the bit representing {@code this} direction set.
+     */
+    public int getMask() {
+        return 1 << ordinal();
     }
 
     /**
@@ -3,6 +3,7 @@ package views;
 import controllers.Renderer;
 import io.Deserializer;
 import io.GameProperties;
+import io.LevelValidator;
 import io.Serializer;
 import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
@@ -31,13 +32,6 @@ import static models.Config.TILE_SIZE;
 
 public class LevelEditorCanvas extends Canvas {
 
-    private static final String MSG_MISSING_SOURCE = "Source tile is missing!";
-    private static final String MSG_MISSING_SINK = "Sink tile is missing!";
-    private static final String MSG_BAD_DIMS = "Map size must be at least 2x2!";
-    private static final String MSG_BAD_DELAY = "Delay must be a positive value!";
-    private static final String MSG_SOURCE_TO_WALL = "Source tile is blocked by a wall!";
-    private static final String MSG_SINK_TO_WALL = "Sink tile is blocked by a wall!";
-
     private GameProperties gameProp;
 
     @Nullable
@@ -340,74 +334,12 @@ public class LevelEditorCanvas extends Canvas {
 
     /**
      * Checks whether the current map and its properties are valid.
-     * <p>
-     * Hint:
-     * You should check for the following conditions:
-     * <ul>
-     * <li>Source cell is present</li>
-     * <li>Sink cell is present</li>
-     * <li>Minimum map size is 2x2</li>
-     * <li>Flow delay is at least 1</li>
-     * <li>Source/Sink tiles are not blocked by walls</li>
-     * </ul>
      *
      * @return {@link Optional} containing the error message, or an empty {@link Optional} if the map is valid.
+     * @see LevelValidator#checkValidity(GameProperties)
      */
     private Optional<String> checkValidity() {
-        // TODO
-        int sinkCount = 0;
-        int sourceCount = 0;
-        Cell sinkCell = null;
-        Cell sourceCell = null;
-
-        for (int i = 0; i < gameProp.rows - 1; i++) {
-            if (gameProp.cells[i][0] instanceof TerminationCell) {
-                sinkCount++;
-                sinkCell = gameProp.cells[i][0];
-            }
-            if (gameProp.cells[i][gameProp.cols - 1] instanceof TerminationCell){
-                sinkCount++;
-                sinkCell = gameProp.cells[i][gameProp.cols - 1];
-            }
-        }
-
-        for (int i = 0; i < gameProp.cols - 1; i++) {
-            if (gameProp.cells[0][i] instanceof TerminationCell) {
-                sinkCount++;
-                sinkCell = gameProp.cells[0][i];
-            }
-            if (gameProp.cells[gameProp.rows - 1][i] instanceof TerminationCell){
-                sinkCount++;
-                sinkCell = gameProp.cells[gameProp.rows-1][i];
-            }
-        }
-
-        for (int i = 1; i < gameProp.rows - 2; i++) {
-            for (int j = 1; j < gameProp.cols - 2; j++)
-                if (gameProp.cells[i][j] instanceof TerminationCell) {
-                    sourceCount++;
-                    sourceCell = gameProp.cells[i][j];
-                }
-        }
-
-        if(sinkCount == 0)
-            return Optional.of(MSG_MISSING_SINK);
-        else if(sourceCount == 0)
-            return Optional.of(MSG_MISSING_SOURCE);
-        else if(gameProp.rows < 2 || gameProp.cols < 2)
-            return Optional.of(MSG_BAD_DIMS);
-        else if(gameProp.delay <= 0)
-            return Optional.of(MSG_BAD_DELAY);
-        else{
-            Coordinate sourceNext = sourceCell.coord.add(((TerminationCell)sourceCell).pointingTo.getOffset());
-            Coordinate sinkNext = sinkCell.coord.add(((TerminationCell)sinkCell).pointingTo.getOpposite().getOffset());
-            if(gameProp.cells[sourceNext.row][sourceNext.col] instanceof Wall)
-                return Optional.of(MSG_SOURCE_TO_WALL);
-            else if(gameProp.cells[sinkNext.row][sinkNext.col] instanceof Wall)
-                return Optional.of(MSG_SINK_TO_WALL);
-        }
-
-        return Optional.empty();
+        return LevelValidator.checkValidity(gameProp);
     }
 
     public int getNumOfRows() {
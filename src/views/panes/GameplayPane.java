@@ -3,8 +3,6 @@ package views.panes;
 import controllers.AudioManager;
 import controllers.LevelManager;
 import controllers.SceneManager;
-import io.Deserializer;
-import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.StringProperty;
@@ -24,8 +22,7 @@ import views.BigButton;
 import views.BigVBox;
 import views.GameplayInfoPane;
 
-import java.io.FileNotFoundException;
-import java.util.TimerTask;
+import java.io.IOException;
 
 import static models.Config.TILE_SIZE;
 
@@ -77,16 +74,6 @@ public class GameplayPane extends GamePane {
         this.setCenter(canvasContainer);
         this.setBottom(bottomBar);
 
-//        try {
-//            Deserializer des = new Deserializer(LevelManager.getInstance().getCurrentLevelPath());
-//            startGame(des.parseFXGame());
-//        } catch (FileNotFoundException e) {
-//            Alert box = new Alert(Alert.AlertType.WARNING);
-//            box.setHeaderText("Cannot open next map");
-//            box.setContentText("You will be returned to the Level Select Menu.");
-//            box.showAndWait();
-//            SceneManager.getInstance().showPane(LevelSelectPane.class);
-//        }
 //        startGame(game);
 
     }
@@ -116,34 +103,7 @@ public class GameplayPane extends GamePane {
                 game.pause();
             } else {
                 resumeButton.setText("Pause");
-                game.addOnTickHandler(new TimerTask() {
-                    @Override
-                    public void run() {
-                        Platform.runLater(() -> {
-                            ticksElapsed.set(ticksElapsed.get() + 1);
-                            game.updateState();
-                            game.renderMap(gameplayCanvas);
-                            game.renderQueue(queueCanvas);
-                        });
-                    }
-                });
-                game.addOnFlowHandler(new TimerTask() {
-                    @Override
-                    public void run() {
-                        Platform.runLater(() -> {
-                            AudioManager audio = AudioManager.getInstance();
-                            game.updateState();
-                            if (game.hasLost()) {
-                                if (audio.isEnabled()) {
-                                    audio.playSound(AudioManager.SoundRes.LOSE);
-                                }
-                                endGame();
-                                createLosePopup();
-                            }
-                        });
-                    }
-                });
-                game.reset();
+                game.resume();
             }
         });
     }
@@ -259,9 +219,8 @@ public class GameplayPane extends GamePane {
             String nextLevel = manager.getAndSetNextLevel();
             if (nextLevel != null) {
                 try {
-                    Deserializer des = new Deserializer(manager.getCurrentLevelPath());
-                    startGame(des.parseFXGame());
-                } catch (FileNotFoundException e) {
+                    startGame(manager.loadCurrentGame());
+                } catch (IOException e) {
                     Alert box = new Alert(Alert.AlertType.WARNING);
                     box.setHeaderText("Cannot open next map");
                     box.setContentText("You will be returned to the Level Select Menu.");
@@ -339,31 +298,22 @@ public class GameplayPane extends GamePane {
         resumeButton.setText("Pause");
         infoPane.bindTo(LevelManager.getInstance().getCurrentLevelProperty(), ticksElapsed, game.getNumOfSteps(), game.getNumOfUndo());
 
-        game.addOnTickHandler(new TimerTask() {
-            @Override
-            public void run() {
-                Platform.runLater(() -> {
-                    ticksElapsed.set(ticksElapsed.get() + 1);
-                    game.updateState();
-                    game.renderMap(gameplayCanvas);
-                    game.renderQueue(queueCanvas);
-                });
-            }
+        // Handlers are run on the JavaFX Application Thread by the game loop.
+        game.addOnTickHandler(() -> {
+            ticksElapsed.set(ticksElapsed.get() + 1);
+            game.updateState();
+            game.renderMap(gameplayCanvas);
+            game.renderQueue(queueCanvas);
         });
-        game.addOnFlowHandler(new TimerTask() {
-            @Override
-            public void run() {
-                Platform.runLater(() -> {
-                    AudioManager audio = AudioManager.getInstance();
-                    game.updateState();
-                    if (game.hasLost()) {
-                        if (audio.isEnabled()) {
-                            audio.playSound(AudioManager.SoundRes.LOSE);
-                        }
-                        endGame();
-                        createLosePopup();
-                    }
-                });
+        game.addOnFlowHandler(() -> {
+            AudioManager audio = AudioManager.getInstance();
+            game.updateState();
+            if (game.hasLost()) {
+                if (audio.isEnabled()) {
+                    audio.playSound(AudioManager.SoundRes.LOSE);
+                }
+                endGame();
+                createLosePopup();
             }
         });
 
@@ -3,19 +3,20 @@ package views.panes;
 import controllers.LevelManager;
 import controllers.Renderer;
 import controllers.SceneManager;
-import io.Deserializer;
-import io.GameProperties;
+import io.LevelPack;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.ListView;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import models.FXGame;
 import views.BigButton;
 import views.BigVBox;
 import views.SideMenuVBox;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
 
 public class LevelSelectPane extends GamePane {
 
@@ -24,6 +25,7 @@ public class LevelSelectPane extends GamePane {
     private BigButton playButton = new BigButton("Play");
     private BigButton playRandom = new BigButton("Generate Map and Play");
     private BigButton chooseMapDirButton = new BigButton("Choose map directory");
+    private BigButton chooseLevelPackButton = new BigButton("Open level pack");
     private ListView<String> levelsListView = new ListView<>(LevelManager.getInstance().getLevelNames());
     private BigVBox centerContainer = new BigVBox();
     private Canvas levelPreview = new Canvas();
@@ -43,6 +45,7 @@ public class LevelSelectPane extends GamePane {
         leftContainer.getChildren().addAll(
                 returnButton,
                 chooseMapDirButton,
+                chooseLevelPackButton,
                 levelsListView,
                 playButton,
                 playRandom
@@ -73,6 +76,7 @@ public class LevelSelectPane extends GamePane {
         // TODO
         returnButton.setOnAction(e -> SceneManager.getInstance().showPane(MainMenuPane.class));
         chooseMapDirButton.setOnAction(e -> promptUserForMapDirectory());
+        chooseLevelPackButton.setOnAction(e -> promptUserForLevelPack());
         playButton.setOnAction(e -> startGame(false));
         playRandom.setOnAction(e -> startGame(true));
         levelsListView.getSelectionModel().selectedItemProperty().addListener((obs, oldValue, newValue) -> onMapSelected(obs, oldValue, newValue));
@@ -101,11 +105,10 @@ public class LevelSelectPane extends GamePane {
 //                newFXGame.startCountdown();
             } else {
                 manager.setLevel(levelsListView.getSelectionModel().getSelectedItem());
-                Deserializer newGame = new Deserializer(manager.getCurrentLevelPath());
-                newFXGame = newGame.parseFXGame();
+                newFXGame = manager.loadCurrentGame();
                 gpp.startGame(newFXGame);
             }
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
 
@@ -129,11 +132,9 @@ public class LevelSelectPane extends GamePane {
         }
         LevelManager manager = LevelManager.getInstance();
         manager.setLevel(newValue);
-        String path = manager.getCurrentLevelPath().toString();
         try {
-            GameProperties gp = new Deserializer(path).parseGameFile();
-            Renderer.renderMap(levelPreview, gp.cells);
-        } catch (FileNotFoundException e) {
+            Renderer.renderMap(levelPreview, manager.loadPackedLevel(newValue).grid);
+        } catch (IOException e) {
             e.printStackTrace();
         }
 
@@ -158,6 +159,22 @@ public class LevelSelectPane extends GamePane {
         }
     }
 
+    /**
+     * Prompts the user for a level pack, and loads levels from it if one is selected.
+     */
+    private void promptUserForLevelPack() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Open Level Pack");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("level packs (" + LevelPack.EXTENSION + ")",
+                Collections.singletonList("*" + LevelPack.EXTENSION)));
+        File pack = chooser.showOpenDialog(null);
+
+        if (pack != null) {
+            levelsListView.getSelectionModel().clearSelection();
+            LevelManager.getInstance().setLevelPack(pack.toPath());
+        }
+    }
+
     /**
      * Actually changes the current map directory.
      *